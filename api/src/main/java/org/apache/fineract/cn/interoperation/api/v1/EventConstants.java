@@ -28,4 +28,13 @@ public interface EventConstants {
   String INITIALIZE = "initialize";
   String SELECTOR_INITIALIZE = OPERATION_HEADER + " = '" + INITIALIZE + "'";
 
+  String POST_IDENTIFIER = "post-identifier";
+  String SELECTOR_POST_IDENTIFIER = OPERATION_HEADER + " = '" + POST_IDENTIFIER + "'";
+  String POST_IDENTIFIERS = "post-identifiers";
+  String SELECTOR_POST_IDENTIFIERS = OPERATION_HEADER + " = '" + POST_IDENTIFIERS + "'";
+  String DELETE_IDENTIFIER = "delete-identifier";
+  String SELECTOR_DELETE_IDENTIFIER = OPERATION_HEADER + " = '" + DELETE_IDENTIFIER + "'";
+  String DELETE_ACCOUNT_IDENTIFIERS = "delete-account-identifiers";
+  String SELECTOR_DELETE_ACCOUNT_IDENTIFIERS = OPERATION_HEADER + " = '" + DELETE_ACCOUNT_IDENTIFIERS + "'";
+
 }
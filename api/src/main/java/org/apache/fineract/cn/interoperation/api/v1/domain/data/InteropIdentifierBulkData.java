@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.api.v1.domain.data;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+public class InteropIdentifierBulkData {
+
+    public static final int MAX_SIZE = 10000;
+
+    @NotEmpty
+    @Size(max = MAX_SIZE)
+    @Valid
+    private List<InteropIdentifierItemData> identifiers;
+
+
+    protected InteropIdentifierBulkData() {
+    }
+
+    public InteropIdentifierBulkData(@NotNull List<InteropIdentifierItemData> identifiers) {
+        this.identifiers = identifiers;
+    }
+
+    @NotNull
+    public List<InteropIdentifierItemData> getIdentifiers() {
+        return identifiers;
+    }
+
+    protected void setIdentifiers(List<InteropIdentifierItemData> identifiers) {
+        this.identifiers = identifiers;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.api.v1.domain.data;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+public class InteropIdentifierBulkResponseData {
+
+    private int registered;
+
+    private int failed;
+
+    @NotNull
+    private List<InteropIdentifierResultData> results;
+
+
+    protected InteropIdentifierBulkResponseData() {
+    }
+
+    public InteropIdentifierBulkResponseData(int registered, int failed, @NotNull List<InteropIdentifierResultData> results) {
+        this.registered = registered;
+        this.failed = failed;
+        this.results = results;
+    }
+
+    public int getRegistered() {
+        return registered;
+    }
+
+    protected void setRegistered(int registered) {
+        this.registered = registered;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    protected void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    @NotNull
+    public List<InteropIdentifierResultData> getResults() {
+        return results;
+    }
+
+    protected void setResults(List<InteropIdentifierResultData> results) {
+        this.results = results;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.api.v1.domain.data;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Party lookup result with the data needed to quote a transfer to the account, saves the caller the account and product lookups.
+ */
+public class InteropIdentifierDetailData extends InteropIdentifierData {
+
+    /** ISO 4217 code of the account currency, null for non customer accounts */
+    private String currency;
+
+    private String productIdentifier;
+
+    @NotNull
+    private String accountState;
+
+    /** true if the account can receive funds */
+    private boolean receivable;
+
+
+    protected InteropIdentifierDetailData() {
+    }
+
+    public InteropIdentifierDetailData(@NotNull String accountId, String currency, String productIdentifier, @NotNull String accountState,
+                                       boolean receivable) {
+        super(accountId);
+        this.currency = currency;
+        this.productIdentifier = productIdentifier;
+        this.accountState = accountState;
+        this.receivable = receivable;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    protected void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public String getProductIdentifier() {
+        return productIdentifier;
+    }
+
+    protected void setProductIdentifier(String productIdentifier) {
+        this.productIdentifier = productIdentifier;
+    }
+
+    @NotNull
+    public String getAccountState() {
+        return accountState;
+    }
+
+    protected void setAccountState(String accountState) {
+        this.accountState = accountState;
+    }
+
+    public boolean isReceivable() {
+        return receivable;
+    }
+
+    protected void setReceivable(boolean receivable) {
+        this.receivable = receivable;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.api.v1.domain.data;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierImportState;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+public class InteropIdentifierImportResponseData {
+
+    @NotNull
+    private String identifier;
+
+    @NotNull
+    private String fileName;
+
+    @NotNull
+    private InteropIdentifierImportState state;
+
+    /** number of the last CSV record committed, the import is resumed after this record */
+    private long committedRecord;
+
+    private long registered;
+
+    private long failed;
+
+    private String message;
+
+    private String createdOn;
+
+    private String lastModifiedOn;
+
+
+    protected InteropIdentifierImportResponseData() {
+    }
+
+    public InteropIdentifierImportResponseData(@NotNull String identifier, @NotNull String fileName, @NotNull InteropIdentifierImportState state,
+                                               long committedRecord, long registered, long failed, String message,
+                                               LocalDateTime createdOn, LocalDateTime lastModifiedOn) {
+        this.identifier = identifier;
+        this.fileName = fileName;
+        this.state = state;
+        this.committedRecord = committedRecord;
+        this.registered = registered;
+        this.failed = failed;
+        this.message = message;
+        this.createdOn = format(createdOn);
+        this.lastModifiedOn = format(lastModifiedOn);
+    }
+
+    @NotNull
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    protected void setIdentifier(String identifier) {
+        this.identifier = identifier;
+    }
+
+    @NotNull
+    public String getFileName() {
+        return fileName;
+    }
+
+    protected void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    @NotNull
+    public InteropIdentifierImportState getState() {
+        return state;
+    }
+
+    protected void setState(InteropIdentifierImportState state) {
+        this.state = state;
+    }
+
+    public long getCommittedRecord() {
+        return committedRecord;
+    }
+
+    protected void setCommittedRecord(long committedRecord) {
+        this.committedRecord = committedRecord;
+    }
+
+    public long getRegistered() {
+        return registered;
+    }
+
+    protected void setRegistered(long registered) {
+        this.registered = registered;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    protected void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    protected void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getCreatedOn() {
+        return createdOn;
+    }
+
+    protected void setCreatedOn(String createdOn) {
+        this.createdOn = createdOn;
+    }
+
+    public String getLastModifiedOn() {
+        return lastModifiedOn;
+    }
+
+    protected void setLastModifiedOn(String lastModifiedOn) {
+        this.lastModifiedOn = lastModifiedOn;
+    }
+
+    private static String format(LocalDateTime date) {
+        return date == null ? null : date.format(DateTimeFormatter.ISO_DATE_TIME);
+    }
+}
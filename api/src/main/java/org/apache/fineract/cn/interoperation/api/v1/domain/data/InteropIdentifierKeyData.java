@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.api.v1.domain.data;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.hibernate.validator.constraints.Length;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.NotNull;
+
+public class InteropIdentifierKeyData {
+
+    @NotNull
+    private InteropIdentifierType idType;
+    @NotEmpty
+    @Length(max = 128)
+    private String idValue;
+    @Length(max = 128)
+    private String subIdOrType;
+
+
+    protected InteropIdentifierKeyData() {
+    }
+
+    public InteropIdentifierKeyData(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        this.idType = idType;
+        this.idValue = idValue;
+        this.subIdOrType = subIdOrType;
+    }
+
+    @NotNull
+    public InteropIdentifierType getIdType() {
+        return idType;
+    }
+
+    protected void setIdType(InteropIdentifierType idType) {
+        this.idType = idType;
+    }
+
+    @NotNull
+    public String getIdValue() {
+        return idValue;
+    }
+
+    protected void setIdValue(String idValue) {
+        this.idValue = idValue;
+    }
+
+    public String getSubIdOrType() {
+        return subIdOrType;
+    }
+
+    protected void setSubIdOrType(String subIdOrType) {
+        this.subIdOrType = subIdOrType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        InteropIdentifierKeyData that = (InteropIdentifierKeyData) o;
+
+        if (idType != that.idType) return false;
+        if (!idValue.equals(that.idValue)) return false;
+        return subIdOrType != null ? subIdOrType.equals(that.subIdOrType) : that.subIdOrType == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = idType.hashCode();
+        result = 31 * result + idValue.hashCode();
+        result = 31 * result + (subIdOrType != null ? subIdOrType.hashCode() : 0);
+        return result;
+    }
+}
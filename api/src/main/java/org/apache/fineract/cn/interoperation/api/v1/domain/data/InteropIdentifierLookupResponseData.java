@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.api.v1.domain.data;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+public class InteropIdentifierLookupResponseData {
+
+    @NotNull
+    private List<InteropIdentifierItemData> found;
+
+    @NotNull
+    private List<InteropIdentifierKeyData> missing;
+
+
+    protected InteropIdentifierLookupResponseData() {
+    }
+
+    public InteropIdentifierLookupResponseData(@NotNull List<InteropIdentifierItemData> found, @NotNull List<InteropIdentifierKeyData> missing) {
+        this.found = found;
+        this.missing = missing;
+    }
+
+    @NotNull
+    public List<InteropIdentifierItemData> getFound() {
+        return found;
+    }
+
+    protected void setFound(List<InteropIdentifierItemData> found) {
+        this.found = found;
+    }
+
+    @NotNull
+    public List<InteropIdentifierKeyData> getMissing() {
+        return missing;
+    }
+
+    protected void setMissing(List<InteropIdentifierKeyData> missing) {
+        this.missing = missing;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.api.v1.domain.data;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierBulkStatus;
+
+import javax.validation.constraints.NotNull;
+
+public class InteropIdentifierResultData extends InteropIdentifierItemData {
+
+    @NotNull
+    private InteropIdentifierBulkStatus status;
+
+    private String message;
+
+
+    protected InteropIdentifierResultData() {
+    }
+
+    public InteropIdentifierResultData(@NotNull InteropIdentifierItemData item, @NotNull InteropIdentifierBulkStatus status, String message) {
+        super(item.getAccountId(), item.getIdType(), item.getIdValue(), item.getSubIdOrType());
+        this.status = status;
+        this.message = message;
+    }
+
+    public InteropIdentifierResultData(@NotNull InteropIdentifierItemData item, @NotNull InteropIdentifierBulkStatus status) {
+        this(item, status, null);
+    }
+
+    @NotNull
+    public InteropIdentifierBulkStatus getStatus() {
+        return status;
+    }
+
+    protected void setStatus(InteropIdentifierBulkStatus status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    protected void setMessage(String message) {
+        this.message = message;
+    }
+}
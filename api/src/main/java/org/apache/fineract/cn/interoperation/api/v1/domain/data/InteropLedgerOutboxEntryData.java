@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.api.v1.domain.data;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropLedgerOutboxState;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+public class InteropLedgerOutboxEntryData {
+
+    @NotNull
+    private String transactionIdentifier;
+
+    @NotNull
+    private InteropLedgerOutboxState state;
+
+    private int attempts;
+
+    private String lastError;
+
+    private String createdOn;
+
+
+    protected InteropLedgerOutboxEntryData() {
+    }
+
+    public InteropLedgerOutboxEntryData(@NotNull String transactionIdentifier, @NotNull InteropLedgerOutboxState state, int attempts,
+                                        String lastError, LocalDateTime createdOn) {
+        this.transactionIdentifier = transactionIdentifier;
+        this.state = state;
+        this.attempts = attempts;
+        this.lastError = lastError;
+        this.createdOn = createdOn == null ? null : createdOn.format(DateTimeFormatter.ISO_DATE_TIME);
+    }
+
+    @NotNull
+    public String getTransactionIdentifier() {
+        return transactionIdentifier;
+    }
+
+    protected void setTransactionIdentifier(String transactionIdentifier) {
+        this.transactionIdentifier = transactionIdentifier;
+    }
+
+    @NotNull
+    public InteropLedgerOutboxState getState() {
+        return state;
+    }
+
+    protected void setState(InteropLedgerOutboxState state) {
+        this.state = state;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    protected void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    protected void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public String getCreatedOn() {
+        return createdOn;
+    }
+
+    protected void setCreatedOn(String createdOn) {
+        this.createdOn = createdOn;
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.fineract.cn.interoperation.api.v1.domain.validation;
 
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierBulkData;
 import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierCommand;
 import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierDeleteCommand;
 import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropQuoteRequestData;
@@ -25,6 +26,7 @@ import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropTransacti
 import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropTransferCommand;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Component
@@ -37,6 +39,16 @@ public class InteroperationDataValidator {
         return requestData;
     }
 
+    public InteropIdentifierBulkData registerAccountIdentifiers(InteropIdentifierBulkData requestData) {
+        List<String> errors = new ArrayList<>();
+        if (requestData.getIdentifiers() == null || requestData.getIdentifiers().isEmpty())
+            errors.add("Identifiers must not be empty");
+        else if (requestData.getIdentifiers().size() > InteropIdentifierBulkData.MAX_SIZE)
+            errors.add("Maximum " + InteropIdentifierBulkData.MAX_SIZE + " identifiers can be registered at once");
+        throwExceptionIfValidationWarningsExist(errors);
+        return requestData;
+    }
+
     public InteropIdentifierDeleteCommand deleteAccountIdentifier(InteropIdentifierDeleteCommand requestData) {
         return requestData;
     }
@@ -25,9 +25,12 @@ import org.apache.fineract.cn.async.config.EnableAsync;
 import org.apache.fineract.cn.cassandra.config.EnableCassandra;
 import org.apache.fineract.cn.command.config.EnableCommandProcessing;
 import org.apache.fineract.cn.deposit.api.v1.client.DepositAccountManager;
+import org.apache.fineract.cn.interoperation.service.internal.listener.ReconnectAwareConnectionFactory;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropIdentifierFilter;
 import org.apache.fineract.cn.lang.config.EnableServiceException;
 import org.apache.fineract.cn.lang.config.EnableTenantContext;
 import org.apache.fineract.cn.mariadb.config.EnableMariaDB;
+import org.apache.fineract.cn.permittedfeignclient.config.EnablePermissionRequestingFeignClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
@@ -38,8 +41,13 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jms.annotation.EnableJms;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.config.JmsListenerContainerFactory;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
+import javax.jms.ConnectionFactory;
+
 @SuppressWarnings("WeakerAccess")
 @Configuration
 @EnableAutoConfiguration
@@ -51,6 +59,9 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter
 @EnableCommandProcessing
 @EnableAnubis
 @EnableServiceException
+@EnableJms
+// application access tokens of the background ledger postings, the clients keep forwarding the token of the request
+@EnablePermissionRequestingFeignClient(feignClasses = {})
 @EnableFeignClients(clients = {
         LedgerManager.class,
         DepositAccountManager.class
@@ -60,6 +71,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter
         "org.apache.fineract.cn.interoperation.service.internal.service",
         "org.apache.fineract.cn.interoperation.service.internal.repository",
         "org.apache.fineract.cn.interoperation.service.internal.command.handler",
+        "org.apache.fineract.cn.interoperation.service.internal.listener",
         "org.apache.fineract.cn.interoperation.api.v1.domain.validation",
         "org.apache.fineract.cn.interoperation.internal.command.handler"
 })
@@ -80,4 +92,21 @@ public class InteropServiceConfiguration extends WebMvcConfigurerAdapter {
     public Gson gson() {
         return new Gson();
     }
+
+    /** Factory of the event listeners, referenced by name so the default listener container factory is left alone */
+    @Bean(name = ServiceConstants.EVENT_LISTENER_FACTORY_NAME)
+    public JmsListenerContainerFactory<?> eventListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                        InteropIdentifierFilter identifierFilter) {
+        // events of the other services are published to topics, every instance must evict its own data
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        factory.setPubSubDomain(true);
+        // the topics are not durable, registrations published while the connection was down are lost: the identifier filters
+        // are dropped when the connection fails and again when it is recovered, they are rebuilt from the database
+        ReconnectAwareConnectionFactory listenerConnectionFactory = new ReconnectAwareConnectionFactory(connectionFactory, identifierFilter::clearAll);
+        factory.setConnectionFactory(listenerConnectionFactory);
+        factory.setExceptionListener(listenerConnectionFactory);
+        // every consumer of a topic receives every event, more than one would process each event several times
+        factory.setConcurrency("1");
+        return factory;
+    }
 }
@@ -22,5 +22,6 @@ public interface ServiceConstants {
 
   String LOGGER_NAME = "interoperation-logger";
   String GSON_NAME = "interoperation-gson";
+  String EVENT_LISTENER_FACTORY_NAME = "interoperation-event-listener-factory";
 
 }
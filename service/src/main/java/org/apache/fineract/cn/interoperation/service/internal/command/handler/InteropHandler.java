@@ -21,6 +21,12 @@ package org.apache.fineract.cn.interoperation.service.internal.command.handler;
 import org.apache.fineract.cn.command.annotation.Aggregate;
 import org.apache.fineract.cn.command.annotation.CommandHandler;
 import org.apache.fineract.cn.command.annotation.CommandLogLevel;
+import org.apache.fineract.cn.command.annotation.EventEmitter;
+import org.apache.fineract.cn.interoperation.api.v1.EventConstants;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropAccountIdentifiersData;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropAccountIdentifiersDeleteCommand;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierBulkData;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierBulkResponseData;
 import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierCommand;
 import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierData;
 import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierDeleteCommand;
@@ -33,12 +39,14 @@ import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropTransferR
 import org.apache.fineract.cn.interoperation.api.v1.domain.validation.InteroperationDataValidator;
 import org.apache.fineract.cn.interoperation.service.ServiceConstants;
 import org.apache.fineract.cn.interoperation.service.internal.service.InteropService;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.LookupContext;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.validation.constraints.NotNull;
+import java.util.function.Supplier;
 
 @SuppressWarnings("unused")
 @Aggregate
@@ -63,8 +71,16 @@ public class InteropHandler {
     @Transactional
     @CommandHandler(logStart = CommandLogLevel.INFO, logFinish = CommandLogLevel.INFO)
     public InteropIdentifierData registerAccountIdentifier(@NotNull InteropIdentifierCommand command) {
-        command = dataValidator.registerAccountIdentifier(command);
-        return interopService.registerAccountIdentifier(command);
+        InteropIdentifierCommand validated = dataValidator.registerAccountIdentifier(command);
+        return withLookupContext(() -> interopService.registerAccountIdentifier(validated));
+    }
+
+    @NotNull
+    @Transactional
+    @CommandHandler(logStart = CommandLogLevel.INFO, logFinish = CommandLogLevel.INFO)
+    public InteropIdentifierBulkResponseData registerAccountIdentifiers(@NotNull InteropIdentifierBulkData command) {
+        InteropIdentifierBulkData validated = dataValidator.registerAccountIdentifiers(command);
+        return withLookupContext(() -> interopService.registerAccountIdentifiers(validated));
     }
 
     @NotNull
@@ -75,21 +91,29 @@ public class InteropHandler {
         return interopService.deleteAccountIdentifier(command);
     }
 
+    @NotNull
+    @Transactional
+    @CommandHandler(logStart = CommandLogLevel.INFO, logFinish = CommandLogLevel.INFO)
+    @EventEmitter(selectorName = EventConstants.OPERATION_HEADER, selectorValue = EventConstants.DELETE_ACCOUNT_IDENTIFIERS)
+    public InteropAccountIdentifiersData deleteAccountIdentifiers(@NotNull InteropAccountIdentifiersDeleteCommand command) {
+        return interopService.deleteAccountIdentifiers(command);
+    }
+
     @NotNull
     @Transactional
     @CommandHandler(logStart = CommandLogLevel.INFO, logFinish = CommandLogLevel.INFO)
     public InteropTransactionRequestResponseData createTransactionRequest(@NotNull InteropTransactionRequestData command) {
         // only when Payee request transaction from Payer, so here role must be always Payer
-        command = dataValidator.validateCreateRequest(command);
-        return interopService.createTransactionRequest(command);
+        InteropTransactionRequestData validated = dataValidator.validateCreateRequest(command);
+        return withLookupContext(() -> interopService.createTransactionRequest(validated));
     }
 
     @NotNull
     @Transactional
     @CommandHandler(logStart = CommandLogLevel.INFO, logFinish = CommandLogLevel.INFO)
     public InteropQuoteResponseData createQuote(@NotNull InteropQuoteRequestData command) {
-        command = dataValidator.validateCreateQuote(command);
-        return interopService.createQuote(command);
+        InteropQuoteRequestData validated = dataValidator.validateCreateQuote(command);
+        return withLookupContext(() -> interopService.createQuote(validated));
     }
 
     @NotNull
@@ -98,15 +122,25 @@ public class InteropHandler {
     public InteropTransferResponseData performTransfer(@NotNull InteropTransferCommand command) {
         switch (command.getAction()) {
             case PREPARE: {
-                command = dataValidator.validatePrepareTransfer(command);
-                return interopService.prepareTransfer(command);
+                InteropTransferCommand validated = dataValidator.validatePrepareTransfer(command);
+                return withLookupContext(() -> interopService.prepareTransfer(validated));
             }
             case CREATE: {
-                command = dataValidator.validateCommitTransfer(command);
-                return interopService.commitTransfer(command);
+                InteropTransferCommand validated = dataValidator.validateCommitTransfer(command);
+                return withLookupContext(() -> interopService.commitTransfer(validated));
             }
             default:
                 return null;
         }
     }
+
+    private <T> T withLookupContext(@NotNull Supplier<T> command) {
+        LookupContext context = LookupContext.open();
+        try {
+            return command.get();
+        } finally {
+            context.close();
+            logger.debug("Remote lookups {}, served from request context {}", context.getLookups(), context.getSavedLookups());
+        }
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.listener;
+
+import com.google.gson.Gson;
+import org.apache.fineract.cn.accounting.api.v1.EventConstants;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.service.InteropService;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.NegativeLookupCache;
+import org.apache.fineract.cn.interoperation.service.internal.service.helper.InteropAccountingService;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Evicts the locally held data about ledger accounts and ledgers when they are changed in the accounting service.
+ */
+@SuppressWarnings("unused")
+@Component
+public class AccountingEventListener {
+
+    private final Logger logger;
+    private final Gson gson;
+    private final InteropService interopService;
+    private final InteropAccountingService accountingService;
+    private final NegativeLookupCache negativeLookupCache;
+
+    @Autowired
+    public AccountingEventListener(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                                   @Qualifier(ServiceConstants.GSON_NAME) Gson gson,
+                                   InteropService interopService,
+                                   InteropAccountingService accountingService,
+                                   NegativeLookupCache negativeLookupCache) {
+        this.logger = logger;
+        this.gson = gson;
+        this.interopService = interopService;
+        this.accountingService = accountingService;
+        this.negativeLookupCache = negativeLookupCache;
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_POST_ACCOUNT)
+    public void onCreateAccount(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, negativeLookupCache::evictAccount);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_PUT_ACCOUNT)
+    public void onModifyAccount(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, this::evictAccount);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_LOCK_ACCOUNT)
+    public void onLockAccount(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, this::evictAccount);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_UNLOCK_ACCOUNT)
+    public void onUnlockAccount(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, this::evictAccount);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_CLOSE_ACCOUNT)
+    public void onCloseAccount(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, this::evictAccount);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_REOPEN_ACCOUNT)
+    public void onReopenAccount(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, this::evictAccount);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_DELETE_ACCOUNT)
+    public void onDeleteAccount(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, this::evictAccount);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_PUT_LEDGER)
+    public void onModifyLedger(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, accountingService::evictLedger);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_DELETE_LEDGER)
+    public void onDeleteLedger(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, accountingService::evictLedger);
+    }
+
+    private void evictAccount(String accountIdentifier) {
+        accountingService.evictAccount(accountIdentifier);
+        negativeLookupCache.evictAccount(accountIdentifier);
+        interopService.evictNostroAccount(accountIdentifier);
+    }
+
+    private void handle(String tenant, String payload, Consumer<String> eviction) {
+        try {
+            TenantContextHolder.setIdentifier(tenant);
+            String identifier = gson.fromJson(payload, String.class);
+            if (identifier != null)
+                eviction.accept(identifier);
+        } catch (RuntimeException ex) {
+            logger.warn("Can not process accounting event " + payload + " of tenant " + tenant, ex);
+        } finally {
+            TenantContextHolder.clear();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.listener;
+
+import com.google.gson.Gson;
+import org.apache.fineract.cn.deposit.api.v1.EventConstants;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.service.helper.InteropDepositService;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Evicts the locally held data about deposit actions, product definitions and product instances when they are changed
+ * in the deposit account management service.
+ */
+@SuppressWarnings("unused")
+@Component
+public class DepositEventListener {
+
+    private final Logger logger;
+    private final Gson gson;
+    private final InteropDepositService depositService;
+
+    @Autowired
+    public DepositEventListener(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                                @Qualifier(ServiceConstants.GSON_NAME) Gson gson,
+                                InteropDepositService depositService) {
+        this.logger = logger;
+        this.gson = gson;
+        this.depositService = depositService;
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_POST_PRODUCT_ACTION)
+    public void onCreateAction(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, identifier -> depositService.evictActions());
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_POST_PRODUCT_DEFINITION)
+    public void onCreateProductDefinition(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, depositService::evictProductDefinition);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_PUT_PRODUCT_DEFINITION)
+    public void onModifyProductDefinition(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, depositService::evictProductDefinition);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_POST_PRODUCT_DEFINITION_COMMAND)
+    public void onProductDefinitionCommand(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, depositService::evictProductDefinition);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_DELETE_PRODUCT_DEFINITION)
+    public void onDeleteProductDefinition(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, depositService::evictProductDefinition);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_POST_PRODUCT_INSTANCE)
+    public void onCreateProductInstance(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, depositService::evictProductInstance);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_PUT_PRODUCT_INSTANCE)
+    public void onModifyProductInstance(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, depositService::evictProductInstance);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_ACTIVATE_PRODUCT_INSTANCE)
+    public void onActivateProductInstance(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, depositService::evictProductInstance);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_CLOSE_PRODUCT_INSTANCE)
+    public void onCloseProductInstance(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, payload, depositService::evictProductInstance);
+    }
+
+    private void handle(String tenant, String payload, Consumer<String> eviction) {
+        try {
+            TenantContextHolder.setIdentifier(tenant);
+            String identifier = gson.fromJson(payload, String.class);
+            if (identifier != null)
+                eviction.accept(identifier);
+        } catch (RuntimeException ex) {
+            logger.warn("Can not process deposit event " + payload + " of tenant " + tenant, ex);
+        } finally {
+            TenantContextHolder.clear();
+        }
+    }
+}
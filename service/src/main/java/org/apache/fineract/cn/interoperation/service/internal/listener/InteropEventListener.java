@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.listener;
+
+import com.google.gson.Gson;
+import org.apache.fineract.cn.interoperation.api.v1.EventConstants;
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropAccountIdentifiersData;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierItemData;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierKeyData;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropIdentifierDirectory;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropIdentifierFilter;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.NegativeLookupCache;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the identifier data of this instance current with the identifiers registered and deleted on the other instances
+ * of the service.
+ */
+@SuppressWarnings("unused")
+@Component
+public class InteropEventListener {
+
+    private final Logger logger;
+    private final Gson gson;
+    private final InteropIdentifierDirectory identifierDirectory;
+    private final InteropIdentifierFilter identifierFilter;
+    private final NegativeLookupCache negativeLookupCache;
+
+    @Autowired
+    public InteropEventListener(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                                @Qualifier(ServiceConstants.GSON_NAME) Gson gson,
+                                InteropIdentifierDirectory identifierDirectory,
+                                InteropIdentifierFilter identifierFilter,
+                                NegativeLookupCache negativeLookupCache) {
+        this.logger = logger;
+        this.gson = gson;
+        this.identifierDirectory = identifierDirectory;
+        this.identifierFilter = identifierFilter;
+        this.negativeLookupCache = negativeLookupCache;
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_POST_IDENTIFIER)
+    public void onRegisterIdentifier(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, () -> {
+            InteropIdentifierItemData identifier = gson.fromJson(payload, InteropIdentifierItemData.class);
+            if (identifier != null && identifier.getIdType() != null)
+                registered(identifier.getIdType(), identifier.getIdValue(), identifier.getSubIdOrType());
+        }, payload);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_POST_IDENTIFIERS)
+    public void onRegisterIdentifiers(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, () -> {
+            InteropIdentifierKeyData[] keys = gson.fromJson(payload, InteropIdentifierKeyData[].class);
+            if (keys == null)
+                return;
+            for (InteropIdentifierKeyData key : keys)
+                registered(key.getIdType(), key.getIdValue(), key.getSubIdOrType());
+        }, payload);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_DELETE_IDENTIFIER)
+    public void onDeleteIdentifier(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, () -> {
+            InteropIdentifierItemData data = gson.fromJson(payload, InteropIdentifierItemData.class);
+            if (data != null && data.getIdType() != null && data.getIdValue() != null)
+                identifierDirectory.remove(data.getIdType(), data.getIdValue(), data.getSubIdOrType());
+            else if (data != null && data.getAccountId() != null)
+                identifierDirectory.removeAccount(data.getAccountId()); // event of an instance which does not send the identifier yet
+            identifierFilter.recordRemoval();
+        }, payload);
+    }
+
+    @JmsListener(containerFactory = ServiceConstants.EVENT_LISTENER_FACTORY_NAME, destination = EventConstants.DESTINATION,
+            selector = EventConstants.SELECTOR_DELETE_ACCOUNT_IDENTIFIERS)
+    public void onDeleteAccountIdentifiers(@Header(TenantHeaderFilter.TENANT_HEADER) final String tenant, final String payload) {
+        handle(tenant, () -> {
+            InteropAccountIdentifiersData data = gson.fromJson(payload, InteropAccountIdentifiersData.class);
+            if (data == null || data.getAccountId() == null || data.getIdentifiers() == null || data.getIdentifiers().isEmpty())
+                return;
+            identifierDirectory.removeAccount(data.getAccountId());
+            identifierFilter.recordRemovals(data.getIdentifiers().size());
+        }, payload);
+    }
+
+    private void registered(InteropIdentifierType idType, String idValue, String subIdOrType) {
+        // already added on the registering instance
+        identifierFilter.put(idType, idValue, subIdOrType);
+        negativeLookupCache.evictIdentifier(idType, idValue, subIdOrType);
+    }
+
+    private void handle(String tenant, Runnable task, String payload) {
+        try {
+            TenantContextHolder.setIdentifier(tenant);
+            task.run();
+        } catch (RuntimeException ex) {
+            logger.warn("Can not process interoperation event " + payload + " of tenant " + tenant, ex);
+        } finally {
+            TenantContextHolder.clear();
+        }
+    }
+}
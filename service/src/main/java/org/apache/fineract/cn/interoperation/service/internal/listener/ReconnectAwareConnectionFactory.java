@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.listener;
+
+import org.springframework.jms.connection.DelegatingConnectionFactory;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection factory and exception listener of the event listener containers, which reports when events might have been lost:
+ * when a connection fails, and when a container reconnects after a failure, as the events published meanwhile were not received.
+ */
+public class ReconnectAwareConnectionFactory extends DelegatingConnectionFactory implements ExceptionListener {
+
+    private final Runnable onEventsLost;
+    /** failed connections not yet recovered, every container has its own shared connection */
+    private final AtomicInteger lostConnections = new AtomicInteger();
+
+    public ReconnectAwareConnectionFactory(ConnectionFactory targetConnectionFactory, Runnable onEventsLost) {
+        this.onEventsLost = onEventsLost;
+        setTargetConnectionFactory(targetConnectionFactory);
+    }
+
+    @Override
+    public void onException(JMSException exception) {
+        lostConnections.incrementAndGet();
+        onEventsLost.run();
+    }
+
+    @Override
+    public Connection createConnection() throws JMSException {
+        Connection connection = super.createConnection();
+        if (lostConnections.getAndUpdate(count -> count > 0 ? count - 1 : 0) > 0)
+            onEventsLost.run();
+        return connection;
+    }
+}
@@ -66,9 +66,16 @@ public class InteropActionEntity {
 
     @Column(name = "commission")
     private BigDecimal commission;
+
+    @Column(name = "prepared_amount")
+    private BigDecimal preparedAmount;
+
+    @Column(name = "prepared_fee")
+    private BigDecimal preparedFee;
 //
-//    @Column(name = "charges", nullable = false, length = 1024)
-//    private String charges;
+    @Lob
+    @Column(name = "charges")
+    private String charges;
 //
 //    @Column(name = "ledgers", nullable = false, length = 1024)
 //    private String ledgers;
@@ -175,14 +182,32 @@ public class InteropActionEntity {
     public void setCommission(BigDecimal commission) {
         this.commission = commission;
     }
-//
-//    public String getCharges() {
-//        return charges;
-//    }
-//
-//    public void setCharges(String charges) {
-//        this.charges = charges;
-//    }
+
+    /** @return principal moved to the payable account by a PREPARE action, null if nothing was prepared or the action predates the column */
+    public BigDecimal getPreparedAmount() {
+        return preparedAmount;
+    }
+
+    public void setPreparedAmount(BigDecimal preparedAmount) {
+        this.preparedAmount = preparedAmount;
+    }
+
+    public BigDecimal getPreparedFee() {
+        return preparedFee;
+    }
+
+    public void setPreparedFee(BigDecimal preparedFee) {
+        this.preparedFee = preparedFee;
+    }
+
+    /** @return compact snapshot of the charges of a QUOTE action, null if the charges were not stored */
+    public String getCharges() {
+        return charges;
+    }
+
+    public void setCharges(String charges) {
+        this.charges = charges;
+    }
 //
 //    public String getLedgers() {
 //        return ledgers;
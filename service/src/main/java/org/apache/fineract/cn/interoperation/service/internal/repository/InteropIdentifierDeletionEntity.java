@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.repository;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.mariadb.util.LocalDateTimeConverter;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "hathor_identifier_deletions")
+public class InteropIdentifierDeletionEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "customer_account_identifier", nullable = false, length = 32)
+    private String customerAccountIdentifier;
+
+    @Column(name = "type", nullable = false, length = 32)
+    @Enumerated(EnumType.STRING)
+    private InteropIdentifierType type;
+
+    @Column(name = "a_value", nullable = false, length = 128)
+    private String value;
+
+    @Column(name = "sub_value_or_type", length = 128)
+    private String subValueOrType;
+
+    @Column(name = "deleted_by", nullable = false, length = 32)
+    private String deletedBy;
+
+    @Column(name = "deleted_on", nullable = false)
+    @Convert(converter = LocalDateTimeConverter.class)
+    private LocalDateTime deletedOn;
+
+
+    protected InteropIdentifierDeletionEntity() {
+    }
+
+    public InteropIdentifierDeletionEntity(@NotNull InteropIdentifierEntity identifier, @NotNull String deletedBy, @NotNull LocalDateTime deletedOn) {
+        this.customerAccountIdentifier = identifier.getCustomerAccountIdentifier();
+        this.type = identifier.getType();
+        this.value = identifier.getValue();
+        this.subValueOrType = identifier.getSubValueOrType();
+        this.deletedBy = deletedBy;
+        this.deletedOn = deletedOn;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getCustomerAccountIdentifier() {
+        return customerAccountIdentifier;
+    }
+
+    public InteropIdentifierType getType() {
+        return type;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getSubValueOrType() {
+        return subValueOrType;
+    }
+
+    public String getDeletedBy() {
+        return deletedBy;
+    }
+
+    public LocalDateTime getDeletedOn() {
+        return deletedOn;
+    }
+}
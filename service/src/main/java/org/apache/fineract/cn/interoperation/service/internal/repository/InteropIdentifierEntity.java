@@ -23,7 +23,12 @@ import org.apache.fineract.cn.mariadb.util.LocalDateTimeConverter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.Locale;
 
 @Entity
 @Table(name = "hathor_identifiers", uniqueConstraints = {
@@ -31,6 +36,16 @@ import java.time.LocalDateTime;
 })
 public class InteropIdentifierEntity {
 
+    private static final char LOOKUP_SEPARATOR = '\u001f';
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
@@ -49,6 +64,10 @@ public class InteropIdentifierEntity {
     @Column(name = "sub_value_or_type", length = 128)
     private String subValueOrType;
 
+    /** calculated by calcLookupHash, null until filled in for the rows inserted without it */
+    @Column(name = "lookup_hash")
+    private Long lookupHash;
+
     @Column(name = "created_by", nullable = false, length = 32)
     private String createdBy;
 
@@ -75,6 +94,7 @@ public class InteropIdentifierEntity {
         this.subValueOrType = subValueOrType;
         this.createdBy = createdBy;
         this.createdOn = createdOn;
+        this.lookupHash = value == null ? null : calcLookupHash(type, value, subValueOrType);
     }
 
     public InteropIdentifierEntity(@NotNull String customerAccountIdentifier, @NotNull InteropIdentifierType type, @NotNull String createdBy,
@@ -112,6 +132,7 @@ public class InteropIdentifierEntity {
 
     public void setValue(String value) {
         this.value = value;
+        this.lookupHash = value == null ? null : calcLookupHash(type, value, subValueOrType);
     }
 
     public String getSubValueOrType() {
@@ -120,6 +141,42 @@ public class InteropIdentifierEntity {
 
     public void setSubValueOrType(String subValueOrType) {
         this.subValueOrType = subValueOrType;
+        this.lookupHash = value == null ? null : calcLookupHash(type, value, subValueOrType);
+    }
+
+    public Long getLookupHash() {
+        return lookupHash;
+    }
+
+    private void setLookupHash(Long lookupHash) {
+        this.lookupHash = lookupHash;
+    }
+
+    /**
+     * @return true if this is the identifier of the type, value and sub-identifier, compared by their normalized keys. Only the case
+     * is ignored, unlike the collation of the unique key accents are significant.
+     */
+    public boolean matches(@NotNull InteropIdentifierType type, @NotNull String value, String subValueOrType) {
+        return this.type == type && normalizeKey(this.value).equals(normalizeKey(value))
+                && (this.subValueOrType == null ? subValueOrType == null : normalizeKey(this.subValueOrType).equals(normalizeKey(subValueOrType)));
+    }
+
+    /** @return the value or sub-identifier as it is compared by the lookups and the caches: lower cased in the root locale */
+    public static String normalizeKey(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return first 8 bytes of MD5(type CHAR(31) normalizeKey(value) [CHAR(31) normalizeKey(subValueOrType)]) in UTF-8, the value
+     * of the lookup_hash column
+     */
+    public static long calcLookupHash(@NotNull InteropIdentifierType type, @NotNull String value, String subValueOrType) {
+        StringBuilder key = new StringBuilder(type.name().length() + value.length() + 2 + (subValueOrType == null ? 0 : subValueOrType.length()))
+                .append(type.name()).append(LOOKUP_SEPARATOR).append(normalizeKey(value));
+        if (subValueOrType != null)
+            key.append(LOOKUP_SEPARATOR).append(normalizeKey(subValueOrType));
+        byte[] digest = MD5.get().digest(key.toString().getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest).getLong();
     }
 
     public String getCreatedBy() {
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.repository;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierImportState;
+import org.apache.fineract.cn.mariadb.util.LocalDateTimeConverter;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "hathor_identifier_imports", uniqueConstraints = {@UniqueConstraint(name = "uk_hathor_identifier_imports_id", columnNames = {"identifier"})})
+public class InteropIdentifierImportEntity {
+
+    public static final int MESSAGE_LENGTH = 1024;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "identifier", nullable = false, length = 36)
+    private String identifier;
+
+    @Column(name = "file_name", nullable = false, length = 1024)
+    private String fileName;
+
+    @Column(name = "state", nullable = false, length = 32)
+    @Enumerated(EnumType.STRING)
+    private InteropIdentifierImportState state;
+
+    @Column(name = "committed_record", nullable = false)
+    private long committedRecord;
+
+    @Column(name = "registered", nullable = false)
+    private long registered;
+
+    @Column(name = "failed", nullable = false)
+    private long failed;
+
+    @Column(name = "message", length = MESSAGE_LENGTH)
+    private String message;
+
+    @Column(name = "created_by", nullable = false, length = 32)
+    private String createdBy;
+
+    @Column(name = "created_on", nullable = false)
+    @Convert(converter = LocalDateTimeConverter.class)
+    private LocalDateTime createdOn;
+
+    @Column(name = "last_modified_on")
+    @Convert(converter = LocalDateTimeConverter.class)
+    private LocalDateTime lastModifiedOn;
+
+
+    protected InteropIdentifierImportEntity() {
+    }
+
+    public InteropIdentifierImportEntity(@NotNull String identifier, @NotNull String fileName, @NotNull String createdBy,
+                                         @NotNull LocalDateTime createdOn) {
+        this.identifier = identifier;
+        this.fileName = fileName;
+        this.state = InteropIdentifierImportState.RUNNING;
+        this.createdBy = createdBy;
+        this.createdOn = createdOn;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    private void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public InteropIdentifierImportState getState() {
+        return state;
+    }
+
+    public void setState(InteropIdentifierImportState state) {
+        this.state = state;
+    }
+
+    public long getCommittedRecord() {
+        return committedRecord;
+    }
+
+    public void setCommittedRecord(long committedRecord) {
+        this.committedRecord = committedRecord;
+    }
+
+    public long getRegistered() {
+        return registered;
+    }
+
+    public void setRegistered(long registered) {
+        this.registered = registered;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message == null || message.length() <= MESSAGE_LENGTH ? message : message.substring(0, MESSAGE_LENGTH);
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public LocalDateTime getCreatedOn() {
+        return createdOn;
+    }
+
+    public LocalDateTime getLastModifiedOn() {
+        return lastModifiedOn;
+    }
+
+    public void setLastModifiedOn(LocalDateTime lastModifiedOn) {
+        this.lastModifiedOn = lastModifiedOn;
+    }
+}
@@ -18,10 +18,40 @@
  */
 package org.apache.fineract.cn.interoperation.service.internal.repository;
 
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface InteropIdentifierRepository extends JpaRepository<InteropIdentifierEntity, Long>, JpaSpecificationExecutor<InteropIdentifierEntity> {
+public interface InteropIdentifierRepository extends JpaRepository<InteropIdentifierEntity, Long>, InteropIdentifierRepositoryCustom {
+
+    /** Exact match on the columns of the unique key, one finder for a null and one for a non-null sub-identifier */
+    InteropIdentifierEntity findByTypeAndValueAndSubValueOrTypeIsNull(@NotNull InteropIdentifierType type, @NotNull String value);
+
+    InteropIdentifierEntity findByTypeAndValueAndSubValueOrType(@NotNull InteropIdentifierType type, @NotNull String value,
+                                                                @NotNull String subValueOrType);
+
+    List<InteropIdentifierEntity> findByLookupHash(Long lookupHash);
+
+    long countByType(InteropIdentifierType type);
+
+    List<InteropIdentifierEntity> findByTypeAndValueIn(InteropIdentifierType type, Collection<String> values);
+
+    List<InteropIdentifierEntity> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    List<InteropIdentifierEntity> findByCustomerAccountIdentifierOrderByIdAsc(String customerAccountIdentifier);
+
+    /** Locks the identifiers of the account, and through the account index the registration of new ones, until the end of the transaction */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM InteropIdentifierEntity i WHERE i.customerAccountIdentifier = :accountId ORDER BY i.id")
+    List<InteropIdentifierEntity> findForUpdateByCustomerAccountIdentifier(@Param("accountId") String customerAccountIdentifier);
 }
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.repository;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierKeyData;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface InteropIdentifierRepositoryCustom {
+
+    /**
+     * Inserts the identifiers with JDBC batches of the given size, without loading them into the persistence context.
+     * The generated ids are not set on the entities. An identifier already registered by an other transaction is skipped instead of
+     * failing the whole batch on the unique key.
+     *
+     * @return the update count of each identifier: 1 if inserted, 0 if skipped, {@link java.sql.Statement#SUCCESS_NO_INFO} if the
+     * driver rewrote the batch and does not know it
+     */
+    int[] insertAll(@NotNull List<InteropIdentifierEntity> identifiers, int batchSize);
+
+    /**
+     * Calculates the lookup_hash of the identifiers inserted without it, e.g. before the column was added or by the sample data,
+     * with JDBC batches of the given size.
+     *
+     * @return the number of updated identifiers
+     */
+    int fillLookupHashes(int batchSize);
+
+    /**
+     * Finds the identifiers of the given keys with one lookup_hash IN query. The result can contain identifiers of other keys
+     * with the same hash, the caller has to match the keys.
+     */
+    @NotNull
+    List<InteropIdentifierEntity> findAllByKeys(@NotNull Collection<InteropIdentifierKeyData> keys);
+
+    /**
+     * Deletes all the identifiers of the account with one statement, after logging them to the identifier deletions with one
+     * statement.
+     *
+     * @return the number of deleted identifiers
+     */
+    int deleteAllByAccount(@NotNull String customerAccountIdentifier, @NotNull String deletedBy, @NotNull LocalDateTime deletedOn);
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.repository;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierKeyData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.validation.constraints.NotNull;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@SuppressWarnings("unused")
+public class InteropIdentifierRepositoryImpl implements InteropIdentifierRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT IGNORE INTO hathor_identifiers " +
+            "(customer_account_identifier, type, a_value, sub_value_or_type, lookup_hash, created_by, created_on) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_BY_LOOKUP_HASH_SQL = "SELECT customer_account_identifier, type, a_value, sub_value_or_type, " +
+            "created_by, created_on FROM hathor_identifiers WHERE lookup_hash IN ";
+
+    private static final String SELECT_WITHOUT_LOOKUP_HASH_SQL = "SELECT id, type, a_value, sub_value_or_type FROM hathor_identifiers " +
+            "WHERE lookup_hash IS NULL ORDER BY id LIMIT ?";
+
+    private static final String UPDATE_LOOKUP_HASH_SQL = "UPDATE hathor_identifiers SET lookup_hash = ? WHERE id = ?";
+
+    private static final String LOG_DELETIONS_BY_ACCOUNT_SQL = "INSERT INTO hathor_identifier_deletions " +
+            "(customer_account_identifier, type, a_value, sub_value_or_type, deleted_by, deleted_on) " +
+            "SELECT customer_account_identifier, type, a_value, sub_value_or_type, ?, ? FROM hathor_identifiers WHERE customer_account_identifier = ?";
+
+    private static final String DELETE_BY_ACCOUNT_SQL = "DELETE FROM hathor_identifiers WHERE customer_account_identifier = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public InteropIdentifierRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int[] insertAll(@NotNull List<InteropIdentifierEntity> identifiers, int batchSize) {
+        int[][] batchCounts = jdbcTemplate.batchUpdate(INSERT_SQL, identifiers, batchSize, (ps, identifier) -> {
+            ps.setString(1, identifier.getCustomerAccountIdentifier());
+            ps.setString(2, identifier.getType().name());
+            ps.setString(3, identifier.getValue());
+            ps.setString(4, identifier.getSubValueOrType());
+            ps.setLong(5, identifier.getLookupHash());
+            ps.setString(6, identifier.getCreatedBy());
+            ps.setTimestamp(7, Timestamp.valueOf(identifier.getCreatedOn()));
+        });
+
+        int[] counts = new int[identifiers.size()];
+        int i = 0;
+        for (int[] batch : batchCounts) {
+            System.arraycopy(batch, 0, counts, i, batch.length);
+            i += batch.length;
+        }
+        return counts;
+    }
+
+    @Override
+    public int fillLookupHashes(int batchSize) {
+        int filled = 0;
+        while (true) {
+            List<Object[]> hashes = jdbcTemplate.query(SELECT_WITHOUT_LOOKUP_HASH_SQL, new Object[]{batchSize}, (rs, rowNum) -> new Object[]{
+                    InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.valueOf(rs.getString("type")), rs.getString("a_value"),
+                            rs.getString("sub_value_or_type")),
+                    rs.getLong("id")});
+            if (hashes.isEmpty())
+                return filled;
+            jdbcTemplate.batchUpdate(UPDATE_LOOKUP_HASH_SQL, hashes);
+            filled += hashes.size();
+        }
+    }
+
+    @Override
+    @NotNull
+    public List<InteropIdentifierEntity> findAllByKeys(@NotNull Collection<InteropIdentifierKeyData> keys) {
+        if (keys.isEmpty())
+            return Collections.emptyList();
+
+        StringBuilder sql = new StringBuilder(SELECT_BY_LOOKUP_HASH_SQL.length() + keys.size() * 3).append(SELECT_BY_LOOKUP_HASH_SQL).append('(');
+        List<Object> params = new ArrayList<>(keys.size());
+        for (InteropIdentifierKeyData key : keys) {
+            if (!params.isEmpty())
+                sql.append(", ");
+            sql.append('?');
+            params.add(InteropIdentifierEntity.calcLookupHash(key.getIdType(), key.getIdValue(), key.getSubIdOrType()));
+        }
+        sql.append(')');
+
+        return jdbcTemplate.query(sql.toString(), params.toArray(), (rs, rowNum) -> new InteropIdentifierEntity(
+                rs.getString("customer_account_identifier"),
+                InteropIdentifierType.valueOf(rs.getString("type")),
+                rs.getString("a_value"),
+                rs.getString("sub_value_or_type"),
+                rs.getString("created_by"),
+                rs.getTimestamp("created_on").toLocalDateTime()));
+    }
+
+    @Override
+    public int deleteAllByAccount(@NotNull String customerAccountIdentifier, @NotNull String deletedBy, @NotNull LocalDateTime deletedOn) {
+        jdbcTemplate.update(LOG_DELETIONS_BY_ACCOUNT_SQL, deletedBy, Timestamp.valueOf(deletedOn), customerAccountIdentifier);
+        return jdbcTemplate.update(DELETE_BY_ACCOUNT_SQL, customerAccountIdentifier);
+    }
+}
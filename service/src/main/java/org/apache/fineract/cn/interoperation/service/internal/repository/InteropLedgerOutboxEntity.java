@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.repository;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropLedgerOutboxState;
+import org.apache.fineract.cn.mariadb.util.LocalDateTimeConverter;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "hathor_ledger_outbox", uniqueConstraints = {@UniqueConstraint(name = "uk_hathor_ledger_outbox_id", columnNames = {"transaction_identifier"})})
+public class InteropLedgerOutboxEntity {
+
+    public static final int ERROR_LENGTH = 1024;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "transaction_identifier", nullable = false, length = 128)
+    private String transactionIdentifier;
+
+    /** identifier of the interoperation transaction, its entries are posted in order */
+    @Column(name = "transaction_code", nullable = false, length = 36)
+    private String transactionCode;
+
+    @Lob
+    @Column(name = "journal_entry", nullable = false)
+    private String journalEntry;
+
+    @Column(name = "state", nullable = false, length = 32)
+    @Enumerated(EnumType.STRING)
+    private InteropLedgerOutboxState state;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_on", nullable = false)
+    @Convert(converter = LocalDateTimeConverter.class)
+    private LocalDateTime nextAttemptOn;
+
+    @Column(name = "last_error", length = ERROR_LENGTH)
+    private String lastError;
+
+    /** claim token of the dispatcher posting the entry, the claim ends at nextAttemptOn */
+    @Column(name = "claimed_by", length = 64)
+    private String claimedBy;
+
+    @Column(name = "created_on", nullable = false)
+    @Convert(converter = LocalDateTimeConverter.class)
+    private LocalDateTime createdOn;
+
+
+    protected InteropLedgerOutboxEntity() {
+    }
+
+    public InteropLedgerOutboxEntity(@NotNull String transactionIdentifier, @NotNull String transactionCode, @NotNull String journalEntry,
+                                     @NotNull LocalDateTime createdOn) {
+        this.transactionIdentifier = transactionIdentifier;
+        this.transactionCode = transactionCode;
+        this.journalEntry = journalEntry;
+        this.state = InteropLedgerOutboxState.PENDING;
+        this.nextAttemptOn = createdOn;
+        this.createdOn = createdOn;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    private void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTransactionIdentifier() {
+        return transactionIdentifier;
+    }
+
+    public String getTransactionCode() {
+        return transactionCode;
+    }
+
+    public String getJournalEntry() {
+        return journalEntry;
+    }
+
+    public InteropLedgerOutboxState getState() {
+        return state;
+    }
+
+    public void setState(InteropLedgerOutboxState state) {
+        this.state = state;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getNextAttemptOn() {
+        return nextAttemptOn;
+    }
+
+    public void setNextAttemptOn(LocalDateTime nextAttemptOn) {
+        this.nextAttemptOn = nextAttemptOn;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError == null || lastError.length() <= ERROR_LENGTH ? lastError : lastError.substring(0, ERROR_LENGTH);
+    }
+
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    public LocalDateTime getCreatedOn() {
+        return createdOn;
+    }
+}
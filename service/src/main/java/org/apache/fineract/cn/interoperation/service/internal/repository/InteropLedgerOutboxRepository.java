@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.repository;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropLedgerOutboxState;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface InteropLedgerOutboxRepository extends JpaRepository<InteropLedgerOutboxEntity, Long> {
+
+    /** @return ids of the due entries which are the first left entry of their transaction */
+    @Query("SELECT e.id FROM InteropLedgerOutboxEntity e WHERE e.state = :state AND e.nextAttemptOn <= :now " +
+            "AND NOT EXISTS (SELECT p.id FROM InteropLedgerOutboxEntity p WHERE p.transactionCode = e.transactionCode AND p.id < e.id) " +
+            "ORDER BY e.id")
+    List<Long> findDueIds(@Param("state") InteropLedgerOutboxState state, @Param("now") LocalDateTime now, Pageable pageable);
+
+    /** Claims the entries which are still due, the claim ends at leaseEnd */
+    @Modifying
+    @Transactional
+    @Query("UPDATE InteropLedgerOutboxEntity e SET e.claimedBy = :claimedBy, e.nextAttemptOn = :leaseEnd " +
+            "WHERE e.id IN :ids AND e.state = :state AND e.nextAttemptOn <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("state") InteropLedgerOutboxState state, @Param("now") LocalDateTime now,
+              @Param("claimedBy") String claimedBy, @Param("leaseEnd") LocalDateTime leaseEnd);
+
+    List<InteropLedgerOutboxEntity> findByClaimedByOrderByIdAsc(String claimedBy);
+
+    /** @return 0 if the entry is already gone */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM InteropLedgerOutboxEntity e WHERE e.id = :id")
+    int deleteEntry(@Param("id") Long id);
+
+    /** @return the entries which are the first left entry of their transaction, by time of the next attempt */
+    @Query("SELECT e FROM InteropLedgerOutboxEntity e WHERE e.state = :state " +
+            "AND NOT EXISTS (SELECT p.id FROM InteropLedgerOutboxEntity p WHERE p.transactionCode = e.transactionCode AND p.id < e.id) " +
+            "ORDER BY e.nextAttemptOn")
+    List<InteropLedgerOutboxEntity> findNext(@Param("state") InteropLedgerOutboxState state, Pageable pageable);
+
+    List<InteropLedgerOutboxEntity> findByStateOrderByIdAsc(InteropLedgerOutboxState state, Pageable pageable);
+
+    InteropLedgerOutboxEntity findOneByTransactionIdentifier(String transactionIdentifier);
+
+    long countByTransactionCode(String transactionCode);
+
+    long countByState(InteropLedgerOutboxState state);
+}
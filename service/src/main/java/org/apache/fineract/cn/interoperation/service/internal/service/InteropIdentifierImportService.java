@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service;
+
+import org.apache.fineract.cn.api.util.UserContextHolder;
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierImportState;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierImportData;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierImportResponseData;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierImportEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierImportRepository;
+import org.apache.fineract.cn.interoperation.service.internal.service.helper.InteropIdentifierImportJob;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.validation.constraints.NotNull;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Starts, resumes and reports the party identifier CSV imports. The files are read from the import directory of the service
+ * (interoperation.identifierImport.directory), imports are disabled if it is not configured.
+ */
+@Service
+public class InteropIdentifierImportService {
+
+    private final Logger logger;
+    private final InteropIdentifierImportRepository importRepository;
+    private final InteropIdentifierImportJob importJob;
+    private final Path importDirectory;
+    private final long staleAfter;
+
+    @Autowired
+    public InteropIdentifierImportService(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                                          InteropIdentifierImportRepository importRepository,
+                                          InteropIdentifierImportJob importJob,
+                                          @Value("${interoperation.identifierImport.directory:}") String importDirectory,
+                                          @Value("${interoperation.identifierImport.staleAfter:600}") long staleAfter) {
+        this.logger = logger;
+        this.importRepository = importRepository;
+        this.importJob = importJob;
+        this.importDirectory = importDirectory == null || importDirectory.trim().isEmpty()
+                ? null
+                : Paths.get(importDirectory.trim()).toAbsolutePath().normalize();
+        this.staleAfter = staleAfter;
+    }
+
+    @NotNull
+    @Transactional
+    public InteropIdentifierImportResponseData startImport(@NotNull InteropIdentifierImportData request) {
+        String fileName = request.getFileName();
+        Path file = resolveFile(fileName);
+
+        InteropIdentifierImportEntity importEntity = new InteropIdentifierImportEntity(UUID.randomUUID().toString(), fileName,
+                UserContextHolder.checkedGetUser(), getNow());
+        importRepository.save(importEntity);
+
+        logger.info("Identifier import {} of {} is registered", importEntity.getIdentifier(), file);
+        afterCommit(() -> importJob.runAsync(importEntity.getIdentifier(), file));
+        return toResponseData(importEntity);
+    }
+
+    /**
+     * Resumes a failed import, or an import left running by a stopped instance, after its last committed record
+     */
+    @NotNull
+    @Transactional
+    public InteropIdentifierImportResponseData resumeImport(@NotNull String identifier) {
+        InteropIdentifierImportEntity importEntity = validateAndGetImport(identifier);
+        switch (importEntity.getState()) {
+            case COMPLETED:
+                throw new UnsupportedOperationException("Identifier import " + identifier + " is already completed");
+            case RUNNING:
+                LocalDateTime lastModified = importEntity.getLastModifiedOn() == null ? importEntity.getCreatedOn() : importEntity.getLastModifiedOn();
+                if (lastModified.plusSeconds(staleAfter).isAfter(getNow()))
+                    throw ServiceException.conflict("Identifier import {0} is running", identifier);
+                break;
+            default:
+                break;
+        }
+        Path file = resolveFile(importEntity.getFileName());
+
+        importEntity.setState(InteropIdentifierImportState.RUNNING);
+        importEntity.setMessage(null);
+        importEntity.setLastModifiedOn(getNow());
+        importRepository.save(importEntity);
+
+        afterCommit(() -> importJob.runAsync(identifier, file));
+        return toResponseData(importEntity);
+    }
+
+    @NotNull
+    public InteropIdentifierImportResponseData getImport(@NotNull String identifier) {
+        return toResponseData(validateAndGetImport(identifier));
+    }
+
+    @NotNull
+    private InteropIdentifierImportEntity validateAndGetImport(@NotNull String identifier) {
+        InteropIdentifierImportEntity importEntity = importRepository.findOneByIdentifier(identifier);
+        if (importEntity == null)
+            throw ServiceException.notFound("Identifier import {0} not found.", identifier);
+        return importEntity;
+    }
+
+    /** @return the file in the import directory, never outside of it */
+    @NotNull
+    private Path resolveFile(@NotNull String fileName) {
+        if (importDirectory == null)
+            throw new UnsupportedOperationException("Identifier import directory is not configured");
+
+        Path file = importDirectory.resolve(fileName).normalize();
+        if (!file.startsWith(importDirectory))
+            throw new UnsupportedOperationException("Import file " + fileName + " is not in the import directory");
+        if (!Files.isRegularFile(file) || !Files.isReadable(file))
+            throw ServiceException.notFound("Import file {0} not found.", fileName);
+        return file;
+    }
+
+    private static InteropIdentifierImportResponseData toResponseData(@NotNull InteropIdentifierImportEntity importEntity) {
+        return new InteropIdentifierImportResponseData(importEntity.getIdentifier(), importEntity.getFileName(), importEntity.getState(),
+                importEntity.getCommittedRecord(), importEntity.getRegistered(), importEntity.getFailed(), importEntity.getMessage(),
+                importEntity.getCreatedOn(), importEntity.getLastModifiedOn());
+    }
+
+    /** Starts the task after the current transaction was committed, the import must be visible to the job */
+    private void afterCommit(@NotNull Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+
+    private static LocalDateTime getNow() {
+        return LocalDateTime.now(Clock.systemUTC());
+    }
+}
@@ -28,8 +28,10 @@ import org.apache.fineract.cn.deposit.api.v1.definition.domain.Charge;
 import org.apache.fineract.cn.deposit.api.v1.definition.domain.Currency;
 import org.apache.fineract.cn.deposit.api.v1.definition.domain.ProductDefinition;
 import org.apache.fineract.cn.deposit.api.v1.instance.domain.ProductInstance;
+import org.apache.fineract.cn.interoperation.api.v1.EventConstants;
 import org.apache.fineract.cn.interoperation.api.v1.domain.InteropActionState;
 import org.apache.fineract.cn.interoperation.api.v1.domain.InteropActionType;
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierBulkStatus;
 import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
 import org.apache.fineract.cn.interoperation.api.v1.domain.InteropState;
 import org.apache.fineract.cn.interoperation.api.v1.domain.InteropStateMachine;
@@ -39,34 +41,57 @@ import org.apache.fineract.cn.interoperation.api.v1.util.MathUtil;
 import org.apache.fineract.cn.interoperation.service.ServiceConstants;
 import org.apache.fineract.cn.interoperation.service.internal.repository.InteropActionEntity;
 import org.apache.fineract.cn.interoperation.service.internal.repository.InteropActionRepository;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierDeletionEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierDeletionRepository;
 import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierEntity;
 import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierRepository;
 import org.apache.fineract.cn.interoperation.service.internal.repository.InteropTransactionEntity;
 import org.apache.fineract.cn.interoperation.service.internal.repository.InteropTransactionRepository;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropCacheManager;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropIdentifierDirectory;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropIdentifierFilter;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropLookupExecutor;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.NegativeLookupCache;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.TenantCache;
+import org.apache.fineract.cn.interoperation.service.internal.service.helper.ChargeSnapshot;
 import org.apache.fineract.cn.interoperation.service.internal.service.helper.InteropAccountingService;
 import org.apache.fineract.cn.interoperation.service.internal.service.helper.InteropDepositService;
+import org.apache.fineract.cn.interoperation.service.internal.service.helper.InteropEventSender;
+import org.apache.fineract.cn.interoperation.service.internal.service.helper.InteropJournalPosting;
+import org.apache.fineract.cn.interoperation.service.internal.service.helper.InteropLedgerOutbox;
 import org.apache.fineract.cn.lang.DateConverter;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.apache.fineract.cn.lang.TenantContextHolder;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.jpa.domain.Specification;
-import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Path;
-import javax.persistence.criteria.Root;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.sql.Statement;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 //import static org.apache.fineract.cn.interoperation.api.v1.util.InteroperationUtil.DEFAULT_ROUTING_CODE;
 
@@ -75,38 +100,154 @@ public class InteropService {
 
     public static final String ACCOUNT_NAME_NOSTRO = "Interoperation NOSTRO";
 
+    public static final String CACHE_NOSTRO_ACCOUNT = "nostroAccount";
+
+    /** JDBC batch size of the bulk identifier insert and chunk size of the existence check */
+    private static final int IDENTIFIER_BATCH_SIZE = 500;
+    private static final String PRODUCT_STATE_CLOSED = "CLOSED";
+
     private final Logger logger;
 
     private final InteropIdentifierRepository identifierRepository;
+    private final InteropIdentifierDeletionRepository identifierDeletionRepository;
     private final InteropTransactionRepository transactionRepository;
     private final InteropActionRepository actionRepository;
 
     private final InteropDepositService depositService;
     private final InteropAccountingService accountingService;
 
+    private final NegativeLookupCache negativeLookupCache;
+    private final InteropIdentifierDirectory identifierDirectory;
+    private final InteropIdentifierFilter identifierFilter;
+    private final InteropLookupExecutor lookupExecutor;
+    private final InteropLedgerOutbox ledgerOutbox;
+    private final InteropEventSender eventSender;
+    private final InteropJournalPosting.PostingMode postingMode;
+    private final boolean verifyPrepared;
+    /** tenant -> identifier of the NOSTRO account, re-resolved when expired */
+    private final TenantCache<String, String> nostroAccountCache;
+    /** tenants whose identifiers inserted without lookup_hash were already filled in since startup */
+    private final Set<String> lookupHashTenants = ConcurrentHashMap.newKeySet();
+
 
     @Autowired
     public InteropService(@Qualifier(ServiceConstants.LOGGER_NAME) final Logger logger,
                           InteropIdentifierRepository interopIdentifierRepository,
+                          InteropIdentifierDeletionRepository interopIdentifierDeletionRepository,
                           InteropTransactionRepository interopTransactionRepository,
                           InteropActionRepository interopActionRepository,
                           InteropDepositService interopDepositService,
-                          InteropAccountingService interopAccountingService) {
+                          InteropAccountingService interopAccountingService,
+                          NegativeLookupCache negativeLookupCache,
+                          InteropIdentifierDirectory identifierDirectory,
+                          InteropIdentifierFilter identifierFilter,
+                          InteropLookupExecutor lookupExecutor,
+                          InteropLedgerOutbox ledgerOutbox,
+                          InteropEventSender eventSender,
+                          InteropCacheManager cacheManager,
+                          @Value("${interoperation.posting.mode:SEPARATE}") InteropJournalPosting.PostingMode postingMode,
+                          @Value("${interoperation.posting.verifyPrepared:false}") boolean verifyPrepared) {
         this.logger = logger;
         this.identifierRepository = interopIdentifierRepository;
+        this.identifierDeletionRepository = interopIdentifierDeletionRepository;
         this.transactionRepository = interopTransactionRepository;
         this.actionRepository = interopActionRepository;
         this.depositService = interopDepositService;
         this.accountingService = interopAccountingService;
+        this.negativeLookupCache = negativeLookupCache;
+        this.identifierDirectory = identifierDirectory;
+        this.identifierFilter = identifierFilter;
+        this.lookupExecutor = lookupExecutor;
+        this.ledgerOutbox = ledgerOutbox;
+        this.eventSender = eventSender;
+        this.postingMode = postingMode;
+        this.verifyPrepared = verifyPrepared;
+        this.nostroAccountCache = cacheManager.createCache(CACHE_NOSTRO_ACCOUNT, 1000, 3600);
     }
 
     @NotNull
     public InteropIdentifierData getAccountByIdentifier(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
-        InteropIdentifierEntity identifier = findIdentifier(idType, idValue, subIdOrType);
-        if (identifier == null)
+        String accountId = findAccountIdentifier(idType, idValue, subIdOrType);
+        if (accountId == null)
             throw new UnsupportedOperationException("Account not found for identifier " + idType + "/" + idValue + (subIdOrType == null ? "" : ("/" + subIdOrType)));
 
-        return new InteropIdentifierData(identifier.getCustomerAccountIdentifier());
+        return new InteropIdentifierData(accountId);
+    }
+
+    /**
+     * @param details if true, the currency, product and state of the account are also returned, from cached account and product data
+     */
+    @NotNull
+    public InteropIdentifierData getAccountByIdentifier(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType,
+                                                        boolean details) {
+        InteropIdentifierData identifier = getAccountByIdentifier(idType, idValue, subIdOrType);
+        return details ? getAccountDetails(identifier.getAccountId()) : identifier;
+    }
+
+    @NotNull
+    private InteropIdentifierDetailData getAccountDetails(@NotNull String accountId) {
+        Account account = accountingService.findCachedAccount(accountId);
+        String accountState = account.getState();
+        boolean receivable = Account.State.OPEN.name().equals(accountState);
+
+        String currency = null;
+        String productIdentifier = null;
+        if (account.getHolders() != null) { // customer account
+            ProductInstance product = depositService.findProductInstance(account.getIdentifier());
+            ProductDefinition productDefinition = depositService.findProductDefinition(product.getProductIdentifier());
+            productIdentifier = product.getProductIdentifier();
+            currency = productDefinition.getCurrency().getCode();
+            receivable = receivable && Boolean.TRUE.equals(productDefinition.getActive()) && !PRODUCT_STATE_CLOSED.equals(product.getState());
+        }
+        return new InteropIdentifierDetailData(accountId, currency, productIdentifier, accountState, receivable);
+    }
+
+    /**
+     * Resolves the accounts of the identifiers: from the identifier directory first, the rest with one lookup_hash IN query.
+     * Duplicated identifiers of the request are reported once.
+     */
+    @NotNull
+    public InteropIdentifierLookupResponseData getAccountsByIdentifiers(@NotNull InteropIdentifierLookupData request) {
+        prepareIdentifierLookup();
+        fillLookupHashes();
+
+        Set<InteropIdentifierKeyData> keys = new LinkedHashSet<>(request.getIdentifiers());
+        Map<InteropIdentifierKeyData, String> accounts = new HashMap<>(keys.size());
+        Set<InteropIdentifierKeyData> unresolved = new HashSet<>();
+        for (InteropIdentifierKeyData key : keys) {
+            String accountId = identifierDirectory.find(key.getIdType(), key.getIdValue(), key.getSubIdOrType());
+            if (accountId != null)
+                accounts.put(key, accountId);
+            else if (identifierFilter.mightContain(key.getIdType(), key.getIdValue(), key.getSubIdOrType())
+                    && !negativeLookupCache.isMissingIdentifier(key.getIdType(), key.getIdValue(), key.getSubIdOrType()))
+                unresolved.add(key);
+        }
+
+        if (!unresolved.isEmpty()) {
+            // the stored identifier may differ in case from the requested ones
+            Map<String, List<InteropIdentifierKeyData>> unresolvedKeys = new HashMap<>(unresolved.size());
+            unresolved.forEach(key -> unresolvedKeys.computeIfAbsent(identifierKey(key.getIdType(), key.getIdValue(), key.getSubIdOrType()),
+                    k -> new ArrayList<>(1)).add(key));
+            long version = identifierDirectory.getVersion();
+            for (InteropIdentifierEntity identifier : identifierRepository.findAllByKeys(unresolved)) {
+                identifierDirectory.put(identifier, version);
+                unresolvedKeys.getOrDefault(identifierKey(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType()),
+                        Collections.emptyList()).forEach(key -> accounts.put(key, identifier.getCustomerAccountIdentifier()));
+            }
+            unresolved.stream().filter(key -> !accounts.containsKey(key))
+                    .forEach(key -> negativeLookupCache.markMissingIdentifier(key.getIdType(), key.getIdValue(), key.getSubIdOrType()));
+        }
+
+        List<InteropIdentifierItemData> found = new ArrayList<>(accounts.size());
+        List<InteropIdentifierKeyData> missing = new ArrayList<>(keys.size() - accounts.size());
+        for (InteropIdentifierKeyData key : keys) {
+            String accountId = accounts.get(key);
+            if (accountId == null)
+                missing.add(key);
+            else
+                found.add(new InteropIdentifierItemData(accountId, key.getIdType(), key.getIdValue(), key.getSubIdOrType()));
+        }
+        return new InteropIdentifierLookupResponseData(found, missing);
     }
 
     @NotNull
@@ -119,14 +260,172 @@ public class InteropService {
         String createdBy = getLoginUser();
         LocalDateTime createdOn = getNow();
 
-        InteropIdentifierEntity identifier = new InteropIdentifierEntity(accountId, request.getIdType(), request.getIdValue(),
-                request.getSubIdOrType(), createdBy, createdOn);
+        InteropIdentifierType idType = request.getIdType();
+        String idValue = request.getIdValue();
+        String subIdOrType = request.getSubIdOrType();
+        InteropIdentifierEntity identifier = new InteropIdentifierEntity(accountId, idType, idValue, subIdOrType, createdBy, createdOn);
 
+        identifierFilter.put(idType, idValue, subIdOrType);
         identifierRepository.save(identifier);
 
+        negativeLookupCache.evictIdentifier(idType, idValue, subIdOrType);
+        afterCommit(() -> {
+            negativeLookupCache.evictIdentifier(idType, idValue, subIdOrType);
+            identifierDirectory.put(idType, idValue, subIdOrType, accountId);
+        });
+        sendEventAfterCommit(EventConstants.POST_IDENTIFIER, new InteropIdentifierItemData(accountId, idType, idValue, subIdOrType));
+
         return new InteropIdentifierData(accountId);
     }
 
+    /**
+     * Registers the identifiers with batched inserts. Every distinct account is validated once, identifiers duplicated in the
+     * request or already registered are not inserted. The result of every item is returned in the order of the request.
+     */
+    @NotNull
+    @Transactional(propagation = Propagation.MANDATORY)
+    public InteropIdentifierBulkResponseData registerAccountIdentifiers(@NotNull InteropIdentifierBulkData request) {
+        List<InteropIdentifierItemData> items = request.getIdentifiers();
+
+        Map<String, String> invalidAccounts = new HashMap<>();
+        items.stream().map(InteropIdentifierItemData::getAccountId).distinct().forEach(accountId -> {
+            String invalidMessage = validateIdentifierAccount(accountId);
+            if (invalidMessage != null)
+                invalidAccounts.put(accountId, invalidMessage);
+        });
+
+        return registerAccountIdentifiers(items, invalidAccounts::get, getLoginUser());
+    }
+
+    /**
+     * @return null if identifiers can be registered for the account, the reason of the rejection otherwise.
+     * Failures of the ledger are not rejections, they are thrown.
+     */
+    public String validateIdentifierAccount(@NotNull String accountId) {
+        try {
+            validateAndGetAccount(accountId);
+            return null;
+        } catch (ServiceException | UnsupportedOperationException ex) {
+            return ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+        }
+    }
+
+    /**
+     * Registers the identifiers with batched inserts, accounts are already validated by the caller. Identifiers registered by an other
+     * request in the meantime are reported as already registered. The keys of the registered identifiers are sent after the commit.
+     *
+     * @param invalidAccounts returns the rejection reason of the account, null for valid accounts
+     */
+    @NotNull
+    @Transactional(propagation = Propagation.MANDATORY)
+    public InteropIdentifierBulkResponseData registerAccountIdentifiers(@NotNull List<InteropIdentifierItemData> items,
+                                                                        @NotNull Function<String, String> invalidAccounts,
+                                                                        @NotNull String createdBy) {
+        Map<String, String> existing = findRegisteredAccounts(items);
+
+        LocalDateTime createdOn = getNow();
+
+        List<InteropIdentifierResultData> results = new ArrayList<>(items.size());
+        List<InteropIdentifierEntity> inserts = new ArrayList<>();
+        List<Integer> insertResults = new ArrayList<>();
+        Set<String> keys = new HashSet<>(items.size());
+        int failed = 0;
+        for (InteropIdentifierItemData item : items) {
+            String key = identifierKey(item.getIdType(), item.getIdValue(), item.getSubIdOrType());
+            String accountId = item.getAccountId();
+            String invalidMessage = invalidAccounts.apply(accountId);
+            String registeredAccountId = existing.get(key);
+            InteropIdentifierResultData result;
+            if (invalidMessage != null)
+                result = new InteropIdentifierResultData(item, InteropIdentifierBulkStatus.ACCOUNT_INVALID, invalidMessage);
+            else if (registeredAccountId != null)
+                result = new InteropIdentifierResultData(item, InteropIdentifierBulkStatus.ALREADY_REGISTERED,
+                        registeredAccountId.equals(accountId) ? null : "Identifier is registered for an other account");
+            else if (!keys.add(key))
+                result = new InteropIdentifierResultData(item, InteropIdentifierBulkStatus.DUPLICATED, "Identifier is duplicated in the request");
+            else {
+                inserts.add(new InteropIdentifierEntity(accountId, item.getIdType(), item.getIdValue(), item.getSubIdOrType(), createdBy, createdOn));
+                insertResults.add(results.size());
+                result = new InteropIdentifierResultData(item, InteropIdentifierBulkStatus.REGISTERED);
+            }
+            if (result.getMessage() != null)
+                failed++;
+            results.add(result);
+        }
+
+        int[] counts = identifierRepository.insertAll(inserts, IDENTIFIER_BATCH_SIZE);
+
+        // identifiers registered by an other request since the check above were skipped by the insert
+        List<InteropIdentifierKeyData> skippedKeys = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] <= 0) {
+                InteropIdentifierEntity identifier = inserts.get(i);
+                skippedKeys.add(new InteropIdentifierKeyData(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType()));
+            }
+        }
+        Map<String, String> skipped = new HashMap<>(skippedKeys.size());
+        if (!skippedKeys.isEmpty()) {
+            identifierRepository.findAllByKeys(skippedKeys).forEach(identifier -> skipped.put(
+                    identifierKey(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType()),
+                    identifier.getCustomerAccountIdentifier()));
+        }
+
+        List<InteropIdentifierEntity> registered = new ArrayList<>(inserts.size());
+        for (int i = 0; i < counts.length; i++) {
+            InteropIdentifierEntity identifier = inserts.get(i);
+            if (counts[i] > 0) {
+                registered.add(identifier);
+                continue;
+            }
+            String registeredAccountId = skipped.get(identifierKey(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType()));
+            boolean own = identifier.getCustomerAccountIdentifier().equals(registeredAccountId);
+            if (counts[i] == Statement.SUCCESS_NO_INFO && own) {
+                registered.add(identifier); // rewritten batch, the row of the account is the inserted one
+                continue;
+            }
+            int index = insertResults.get(i);
+            results.set(index, new InteropIdentifierResultData(results.get(index), InteropIdentifierBulkStatus.ALREADY_REGISTERED,
+                    own ? null : "Identifier is registered for an other account"));
+            if (!own)
+                failed++;
+        }
+
+        registered.forEach(identifier -> identifierFilter.put(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType()));
+        afterCommit(() -> {
+            negativeLookupCache.evictIdentifiers();
+            registered.forEach(identifier -> identifierDirectory.put(identifier.getType(), identifier.getValue(),
+                    identifier.getSubValueOrType(), identifier.getCustomerAccountIdentifier()));
+        });
+        if (!registered.isEmpty())
+            sendEventAfterCommit(EventConstants.POST_IDENTIFIERS, toKeys(registered));
+        logger.info("Bulk registration of {} identifiers: {} registered, {} failed", items.size(), registered.size(), failed);
+
+        return new InteropIdentifierBulkResponseData(registered.size(), failed, results);
+    }
+
+    /** @return identifier key -> registered account of the already registered identifiers, queried in chunks by type */
+    private Map<String, String> findRegisteredAccounts(@NotNull List<InteropIdentifierItemData> items) {
+        Map<InteropIdentifierType, Set<String>> valuesByType = new EnumMap<>(InteropIdentifierType.class);
+        items.forEach(item -> valuesByType.computeIfAbsent(item.getIdType(), type -> new HashSet<>()).add(item.getIdValue()));
+
+        Map<String, String> registered = new HashMap<>();
+        valuesByType.forEach((type, values) -> {
+            List<String> valueList = new ArrayList<>(values);
+            for (int from = 0; from < valueList.size(); from += IDENTIFIER_BATCH_SIZE) {
+                List<String> chunk = valueList.subList(from, Math.min(from + IDENTIFIER_BATCH_SIZE, valueList.size()));
+                identifierRepository.findByTypeAndValueIn(type, chunk).forEach(identifier -> registered.put(
+                        identifierKey(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType()),
+                        identifier.getCustomerAccountIdentifier()));
+            }
+        });
+        return registered;
+    }
+
+    private static String identifierKey(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        return idType.name() + '/' + InteropIdentifierEntity.normalizeKey(idValue)
+                + (subIdOrType == null ? "" : ('/' + InteropIdentifierEntity.normalizeKey(subIdOrType)));
+    }
+
     @NotNull
     @Transactional(propagation = Propagation.MANDATORY)
     public InteropIdentifierData deleteAccountIdentifier(@NotNull InteropIdentifierDeleteCommand request) {
@@ -134,17 +433,56 @@ public class InteropService {
         String idValue = request.getIdValue();
         String subIdOrType = request.getSubIdOrType();
 
-        InteropIdentifierEntity identifier = findIdentifier(idType, idValue, subIdOrType);
+        // not through the lookup caches, they may not know an identifier registered just now on an other instance
+        InteropIdentifierEntity identifier = subIdOrType == null
+                ? identifierRepository.findByTypeAndValueAndSubValueOrTypeIsNull(idType, idValue)
+                : identifierRepository.findByTypeAndValueAndSubValueOrType(idType, idValue, subIdOrType);
         if (identifier == null)
             throw new UnsupportedOperationException("Account not found for identifier " + idType + "/" + idValue + (subIdOrType == null ? "" : ("/" + subIdOrType)));
 
         String customerAccountIdentifier = identifier.getCustomerAccountIdentifier();
 
         identifierRepository.delete(identifier);
+        identifierDeletionRepository.save(new InteropIdentifierDeletionEntity(identifier, getLoginUser(), getNow()));
+        identifierDirectory.remove(idType, idValue, subIdOrType);
+        afterCommit(() -> identifierDirectory.remove(idType, idValue, subIdOrType));
+
+        sendEventAfterCommit(EventConstants.DELETE_IDENTIFIER, new InteropIdentifierItemData(customerAccountIdentifier, idType, idValue, subIdOrType));
 
         return new InteropIdentifierData(customerAccountIdentifier);
     }
 
+    @NotNull
+    public InteropAccountIdentifiersData getAccountIdentifiers(@NotNull String accountId) {
+        return new InteropAccountIdentifiersData(accountId, toKeys(identifierRepository.findByCustomerAccountIdentifierOrderByIdAsc(accountId)));
+    }
+
+    /**
+     * Deletes all the identifiers of the account on account closure, with one delete statement instead of a command per identifier.
+     * Deleting the identifiers of an account without identifiers is not an error.
+     */
+    @NotNull
+    @Transactional(propagation = Propagation.MANDATORY)
+    public InteropAccountIdentifiersData deleteAccountIdentifiers(@NotNull InteropAccountIdentifiersDeleteCommand request) {
+        String accountId = request.getAccountId();
+
+        List<InteropIdentifierEntity> identifiers = identifierRepository.findForUpdateByCustomerAccountIdentifier(accountId);
+        if (!identifiers.isEmpty()) {
+            int deleted = identifierRepository.deleteAllByAccount(accountId, getLoginUser(), getNow());
+            identifierDirectory.removeAccount(accountId);
+            afterCommit(() -> identifierDirectory.removeAccount(accountId));
+            logger.info("{} identifiers of account {} were deleted", deleted, accountId);
+        }
+        return new InteropAccountIdentifiersData(accountId, toKeys(identifiers));
+    }
+
+    private static List<InteropIdentifierKeyData> toKeys(@NotNull List<InteropIdentifierEntity> identifiers) {
+        List<InteropIdentifierKeyData> keys = new ArrayList<>(identifiers.size());
+        identifiers.forEach(identifier -> keys.add(new InteropIdentifierKeyData(identifier.getType(), identifier.getValue(),
+                identifier.getSubValueOrType())));
+        return keys;
+    }
+
     public InteropTransactionRequestResponseData getTransactionRequest(@NotNull String transactionCode, @NotNull String requestCode) {
         InteropActionEntity action = validateAndGetAction(transactionCode, calcActionIdentifier(requestCode, InteropActionType.REQUEST),
                 InteropActionType.REQUEST);
@@ -202,7 +540,7 @@ public class InteropService {
         // TODO add action and set the status to failed in separated transaction
         InteropActionEntity action = addAction(transaction, request);
         action.setFee(fee);
-        // TODO: extend Charge with a property that could be stored in charges
+        action.setCharges(ChargeSnapshot.serialize(charges));
 
         transactionRepository.save(transaction);
 
@@ -236,13 +574,12 @@ public class InteropService {
         validateTransfer(request, accountWrapper);
 
         TransactionType transactionType = request.getTransactionRole().getTransactionType();
-        List<Charge> charges = depositService.getCharges(accountWrapper.account.getIdentifier(), transactionType);
+        List<Charge> charges = getCharges(transaction, accountWrapper.account.getIdentifier(), transactionType);
 
         // TODO add action and set the status to failed in separated transaction
         InteropActionEntity action = addAction(transaction, request, transactionDate);
         MoneyData fee = request.getFspFee();
         action.setFee(fee == null ? null : fee.getAmount());
-        // TODO: extend Charge with a property that could be stored in charges
 
         prepareTransfer(request, accountWrapper, action, charges, transactionDate);
 
@@ -267,13 +604,12 @@ public class InteropService {
         validateTransfer(request, accountWrapper);
 
         TransactionType transactionType = request.getTransactionRole().getTransactionType();
-        List<Charge> charges = depositService.getCharges(accountWrapper.account.getIdentifier(), transactionType);
+        List<Charge> charges = getCharges(transaction, accountWrapper.account.getIdentifier(), transactionType);
 
         // TODO add action and set the status to failed in separated transaction
         InteropActionEntity action = addAction(transaction, request, transactionDate);
         MoneyData fee = request.getFspFee();
         action.setFee(fee == null ? null : fee.getAmount());
-        // TODO: extend Charge with a property that could be stored in charges
 
         bookTransfer(request, accountWrapper, action, charges, transactionDate);
 
@@ -283,6 +619,22 @@ public class InteropService {
                 request.getExtensionList(), request.getTransferCode(), transactionDate);
     }
 
+    /**
+     * @return the charges stored by the quote of the transaction, so the quoted fee is booked. The current charges if there was no quote
+     * or it was stored without snapshot, before the snapshots were introduced.
+     */
+    @NotNull
+    private List<Charge> getCharges(@NotNull InteropTransactionEntity transaction, @NotNull String accountId, @NotNull TransactionType transactionType) {
+        InteropActionEntity quoteAction = findAction(transaction, InteropActionType.QUOTE);
+        List<Charge> charges = quoteAction == null ? null : ChargeSnapshot.deserialize(quoteAction.getCharges());
+        if (charges != null)
+            return charges;
+
+        logger.warn("Transaction {} has {}, the current charges of account {} are booked instead of the quoted ones", transaction.getIdentifier(),
+                quoteAction == null ? "no quote" : "no charge snapshot of quote " + quoteAction.getIdentifier(), accountId);
+        return depositService.getCharges(accountId, transactionType);
+    }
+
     Double getWithdrawableBalance(Account account, ProductDefinition productDefinition) {
         // on-hold amount, if any, is subtracted to payable account
         return MathUtil.subtractToZero(account.getBalance(), productDefinition.getMinimumBalance());
@@ -312,7 +664,7 @@ public class InteropService {
         addCreditor(accountWrapper.account.getIdentifier(), amount.doubleValue(), creditors);
         addDebtor(payableAccount.getIdentifier(), amount.doubleValue(), debtors);
 
-        prepareCharges(request, accountWrapper, action, charges, payableAccount, debtors, creditors);
+        BigDecimal fee = prepareCharges(request, accountWrapper, action, charges, payableAccount, debtors, creditors);
 
         if (debtors.isEmpty()) // must be same size as creditors
             return;
@@ -320,9 +672,13 @@ public class InteropService {
         journalEntry.setDebtors(debtors);
         journalEntry.setCreditors(creditors);
         accountingService.createJournalEntry(journalEntry);
+
+        action.setPreparedAmount(amount);
+        action.setPreparedFee(fee);
     }
 
-    private void prepareCharges(@NotNull InteropTransferCommand request, @NotNull AccountWrapper accountWrapper, @NotNull InteropActionEntity action,
+    /** @return the prepared fee, null if there are no charges */
+    private BigDecimal prepareCharges(@NotNull InteropTransferCommand request, @NotNull AccountWrapper accountWrapper, @NotNull InteropActionEntity action,
                                 @NotNull List<Charge> charges, Account payableAccount, HashSet<Debtor> debtors, HashSet<Creditor> creditors) {
         MoneyData fspFee = request.getFspFee(); // TODO compare with calculated and with quote
 
@@ -332,7 +688,7 @@ public class InteropService {
         BigDecimal total = MathUtil.normalize(calcTotalCharges(charges, amount), currency);
 
         if (MathUtil.isEmpty(total)) {
-            return;
+            return null;
         }
 
         if (creditors == null) {
@@ -343,6 +699,7 @@ public class InteropService {
         }
         addCreditor(accountWrapper.account.getIdentifier(), total.doubleValue(), creditors);
         addDebtor(payableAccount.getIdentifier(), total.doubleValue(), debtors);
+        return total;
     }
 
     private void bookTransfer(@NotNull InteropTransferCommand request, @NotNull AccountWrapper accountWrapper, @NotNull InteropActionEntity action,
@@ -356,7 +713,18 @@ public class InteropService {
         String transactionTypeCode = (isDebit ? TransactionType.CURRENCY_WITHDRAWAL : TransactionType.CURRENCY_DEPOSIT).getCode();
         String transactionDateString = DateConverter.toIsoString(transactionDate);
 
+        // the commit legs settling prepared or NOSTRO funds go through the ledger outbox if enabled, the legs debiting the customer
+        // account are posted directly as the balance check reads the ledger, the prepare entry is read back by the commit so it is always posted directly.
+        // While entries of the transaction are still in the outbox every leg is enqueued, so none is posted before them
         InteropTransactionEntity transaction = action.getTransaction();
+        String transactionCode = transaction.getIdentifier();
+        Consumer<JournalEntry> outboxSink = entry -> ledgerOutbox.enqueue(entry, transactionCode);
+        boolean ordered = ledgerOutbox.hasEntries(transactionCode);
+        Consumer<JournalEntry> sink = ordered || ledgerOutbox.acceptsMore() ? outboxSink : accountingService::createJournalEntry;
+        Consumer<JournalEntry> directSink = ordered ? outboxSink : accountingService::createJournalEntry;
+        InteropJournalPosting posting = new InteropJournalPosting(sink, directSink, accountId, postingMode,
+                createJournalEntry(action.getIdentifier(), transactionTypeCode, transactionDateString, message, loginUser));
+
         Account nostroAccount = validateAndGetAccount(request, transaction.getNostroAccountIdentifier());
         Account payableAccount = null;
 
@@ -366,13 +734,8 @@ public class InteropService {
         if (isDebit) {
             InteropActionEntity prepareAction = findAction(transaction, InteropActionType.PREPARE);
             if (prepareAction != null) {
-                JournalEntry prepareJournal = accountingService.findJournalEntry(prepareAction.getIdentifier());
-                if (prepareJournal == null)
-                    throw new UnsupportedOperationException("Can not find prepare result for " + action.getActionType() +
-                            "/" + request.getIdentifier());
-
+                preparedAmount = getPreparedAmount(request, action, prepareAction);
                 payableAccount = validateAndGetAccount(request, transaction.getPrepareAccountIdentifier());
-                preparedAmount = prepareJournal.getDebtors().stream().mapToDouble(d -> Double.valueOf(d.getAmount())).sum();
                 if (preparedAmount < doubleAmount)
                     throw new UnsupportedOperationException("Prepared amount " + preparedAmount + " is less than transfer amount " +
                             doubleAmount + " for " + request.getIdentifier());
@@ -395,7 +758,7 @@ public class InteropService {
 
                     fromPrepareToNostroEntry.setDebtors(debtors);
                     fromPrepareToNostroEntry.setCreditors(creditors);
-                    accountingService.createJournalEntry(fromPrepareToNostroEntry);
+                    posting.add(fromPrepareToNostroEntry);
                 }
             }
         }
@@ -412,10 +775,10 @@ public class InteropService {
 
             journalEntry.setDebtors(debtors);
             journalEntry.setCreditors(creditors);
-            accountingService.createJournalEntry(journalEntry);
+            posting.add(journalEntry);
         }
 
-        preparedAmount = bookCharges(request, accountWrapper, action, charges, payableAccount, preparedAmount, transactionDate);
+        preparedAmount = bookCharges(request, accountWrapper, action, charges, payableAccount, preparedAmount, transactionDate, posting);
 
         if (preparedAmount > 0) {
 //            throw new UnsupportedOperationException("Prepared amount differs from transfer amount " + doubleAmount + " for " + request.getIdentifier());
@@ -432,12 +795,31 @@ public class InteropService {
 
             fromPrepareToAccountEntry.setDebtors(debtors);
             fromPrepareToAccountEntry.setCreditors(creditors);
-            accountingService.createJournalEntry(fromPrepareToAccountEntry);
+            posting.add(fromPrepareToAccountEntry);
+        }
+        posting.flush();
+    }
+
+    /** @return prepared principal and fee, read back from the prepare journal only for actions prepared before they were stored */
+    private double getPreparedAmount(@NotNull InteropTransferCommand request, @NotNull InteropActionEntity action,
+                                     @NotNull InteropActionEntity prepareAction) {
+        BigDecimal preparedAmount = MathUtil.add(prepareAction.getPreparedAmount(), prepareAction.getPreparedFee());
+        if (preparedAmount != null) {
+            if (verifyPrepared)
+                accountingService.verifyJournalEntry(prepareAction.getIdentifier(), preparedAmount);
+            return preparedAmount.doubleValue();
         }
+
+        JournalEntry prepareJournal = accountingService.findJournalEntry(prepareAction.getIdentifier());
+        if (prepareJournal == null)
+            throw new UnsupportedOperationException("Can not find prepare result for " + action.getActionType() +
+                    "/" + request.getIdentifier());
+        return prepareJournal.getDebtors().stream().mapToDouble(d -> Double.valueOf(d.getAmount())).sum();
     }
 
     private double bookCharges(@NotNull InteropTransferCommand request, @NotNull AccountWrapper accountWrapper, @NotNull InteropActionEntity action,
-                               @NotNull List<Charge> charges, Account payableAccount, double preparedAmount, LocalDateTime transactionDate) {
+                               @NotNull List<Charge> charges, Account payableAccount, double preparedAmount, LocalDateTime transactionDate,
+                               @NotNull InteropJournalPosting posting) {
         boolean isDebit = request.getTransactionRole().isWithdraw();
         String accountId = accountWrapper.account.getIdentifier();
         String message = request.getNote();
@@ -493,7 +875,7 @@ public class InteropService {
 
                     fromPrepareToRevenueEntry.setDebtors(debtors);
                     fromPrepareToRevenueEntry.setCreditors(creditors);
-                    accountingService.createJournalEntry(fromPrepareToRevenueEntry);
+                    posting.add(fromPrepareToRevenueEntry);
                 }
             }
         }
@@ -522,7 +904,7 @@ public class InteropService {
 
                 journalEntry.setDebtors(debtors);
                 journalEntry.setCreditors(creditors);
-                accountingService.createJournalEntry(journalEntry);
+                posting.add(journalEntry);
             }
         }
 
@@ -586,13 +968,42 @@ public class InteropService {
         return account;
     }
 
+    /**
+     * The account and its product are looked up in parallel. The NOSTRO and the payable account needed later by the transaction
+     * are prefetched in the same stage, so the latency is that of the slowest remote call and not their sum.
+     * The transaction read to decide on the prefetches is passed on to {@link #validateAndGetTransaction} in the wrapper.
+     */
     private AccountWrapper validateAndGetAccount(@NotNull InteropRequestData request) {
         //TODO: error handling
         String accountId = request.getAccountId();
-        Account account = accountingService.findAccount(accountId);
+        InteropTransactionEntity transaction = transactionRepository.findOneByIdentifier(request.getTransactionCode());
+        boolean newTransaction = transaction == null;
+        boolean prefetchPayable = newTransaction || request.getTransactionRole().isWithdraw();
+        boolean prefetchNostro = newTransaction || request.getActionType() == InteropActionType.COMMIT;
+
+        Account account;
+        ProductInstance product;
+        try (InteropLookupExecutor.LookupStage stage = lookupExecutor.openStage()) {
+            Future<Account> accountLookup = stage.submit(() -> {
+                Account found = accountingService.findAccount(accountId);
+                String referenceId = found.getReferenceAccount();
+                if (prefetchPayable && referenceId != null)
+                    stage.prefetch(() -> accountingService.findAccount(referenceId));
+                return found;
+            });
+            Future<ProductInstance> productLookup = stage.submit(() -> {
+                ProductInstance found = depositService.findProductInstance(accountId);
+                depositService.findProductDefinition(found.getProductIdentifier());
+                return found;
+            });
+            if (prefetchNostro)
+                stage.prefetch(() -> accountingService.findAccount(getNostroAccountIdentifier()));
+
+            account = stage.join(accountLookup);
+            product = stage.join(productLookup);
+        }
         validateAccount(request, account);
 
-        ProductInstance product = depositService.findProductInstance(accountId);
         ProductDefinition productDefinition = depositService.findProductDefinition(product.getProductIdentifier());
 
         Currency currency = productDefinition.getCurrency();
@@ -605,7 +1016,7 @@ public class InteropService {
         if (request.getTransactionRole().isWithdraw() && withdrawableBalance < request.getAmount().getAmount().doubleValue())
             throw new UnsupportedOperationException();
 
-        return new AccountWrapper(account, product, productDefinition, withdrawableBalance);
+        return new AccountWrapper(account, product, productDefinition, withdrawableBalance, transaction);
     }
 
     private Account validateAndGetPayableAccount(@NotNull InteropRequestData request, @NotNull AccountWrapper wrapper) {
@@ -619,14 +1030,70 @@ public class InteropService {
     @NotNull
     private Account validateAndGetNostroAccount(@NotNull InteropRequestData request) {
         //TODO: error handling
+        Account nostro;
+        try {
+            nostro = accountingService.findAccount(getNostroAccountIdentifier());
+        } catch (ServiceException ex) {
+            if (ex.serviceError().getCode() != HttpStatus.NOT_FOUND.value())
+                throw ex;
+            nostro = null;
+        }
+        if (nostro == null || Account.State.CLOSED.name().equals(nostro.getState())) {
+            // pinned account does not exist any more or was closed, an other NOSTRO account may have replaced it
+            nostro = accountingService.findAccount(refreshNostroAccount());
+        }
+        validateAccount(request, nostro);
+        return nostro;
+    }
+
+    @NotNull
+    private String getNostroAccountIdentifier() {
+        return nostroAccountCache.get(ACCOUNT_NAME_NOSTRO, this::resolveNostroAccountIdentifier);
+    }
+
+    /** Searches the NOSTRO account of the current tenant on the ledger and pins its identifier */
+    @NotNull
+    public String refreshNostroAccount() {
+        String nostroId = resolveNostroAccountIdentifier();
+        nostroAccountCache.put(ACCOUNT_NAME_NOSTRO, nostroId);
+        logger.info("NOSTRO account {} is pinned", nostroId);
+        return nostroId;
+    }
+
+    /** Unpins the NOSTRO account if it is the given account, it is resolved again on next use */
+    public void evictNostroAccount(@NotNull String accountIdentifier) {
+        if (accountIdentifier.equals(nostroAccountCache.getIfPresent(ACCOUNT_NAME_NOSTRO)))
+            nostroAccountCache.invalidate(ACCOUNT_NAME_NOSTRO);
+    }
+
+    public void syncAlternativeAccountNumbers() {
+        accountingService.syncAlternativeAccountNumbers();
+    }
+
+    public void dispatchLedgerOutbox() {
+        if (!ledgerOutbox.isEnabled())
+            throw new UnsupportedOperationException("Ledger outbox is not enabled");
+        ledgerOutbox.requestDispatch();
+    }
+
+    @NotNull
+    public List<InteropLedgerOutboxEntryData> getFailedLedgerPostings(int page, int size) {
+        return ledgerOutbox.getFailedEntries(page, size);
+    }
+
+    @Transactional
+    public void requeueLedgerPosting(@NotNull String transactionIdentifier) {
+        ledgerOutbox.requeue(transactionIdentifier);
+    }
+
+    @NotNull
+    private String resolveNostroAccountIdentifier() {
         List<Account> nostros = fetchAccounts(false, ACCOUNT_NAME_NOSTRO, AccountType.ASSET.name(), false, null, null, null, null);
         int size = nostros.size();
         if (size != 1)
             throw new UnsupportedOperationException("NOSTRO Account " + (size == 0 ? "not found" : "is ambigous"));
 
-        Account nostro = nostros.get(0);
-        validateAccount(request, nostro);
-        return nostro;
+        return nostros.get(0).getIdentifier();
     }
 
     @NotNull
@@ -693,23 +1160,61 @@ public class InteropService {
         return accountingService.fetchAccounts(includeClosed, term, type, includeCustomerAccounts, pageIndex, size, sortColumn, sortDirection);
     }
 
-    public InteropIdentifierEntity findIdentifier(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
-        return identifierRepository.findOne(Specifications.where(idTypeEqual(idType)).and(idValueEqual(idValue)).and(subIdOrTypeEqual(subIdOrType)));
+    /** @return customer account registered for the identifier, from the identifier directory if possible */
+    public String findAccountIdentifier(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        prepareIdentifierLookup();
+
+        String accountId = identifierDirectory.find(idType, idValue, subIdOrType);
+        if (accountId != null)
+            return accountId;
+
+        long version = identifierDirectory.getVersion();
+        InteropIdentifierEntity identifier = findIdentifier(idType, idValue, subIdOrType);
+        if (identifier == null)
+            return null;
+
+        identifierDirectory.put(identifier, version);
+        return identifier.getCustomerAccountIdentifier();
     }
 
-    public static Specification<InteropIdentifierEntity> idTypeEqual(@NotNull InteropIdentifierType idType) {
-        return (Root<InteropIdentifierEntity> root, CriteriaQuery<?> query, CriteriaBuilder cb) -> cb.and(cb.equal(root.get("type"), idType));
+    /** Starts the background load of the identifier directory and the build of the identifier filter of the tenant if needed */
+    private void prepareIdentifierLookup() {
+        if (identifierDirectory.requestLoad())
+            identifierDirectory.loadAsync();
+        if (identifierFilter.requestBuild())
+            identifierFilter.buildAsync();
     }
 
-    public static Specification<InteropIdentifierEntity> idValueEqual(@NotNull String idValue) {
-        return (Root<InteropIdentifierEntity> root, CriteriaQuery<?> query, CriteriaBuilder cb) -> cb.and(cb.equal(root.get("value"), idValue));
+    /**
+     * Calculates the lookup_hash of the identifiers of the current tenant inserted without it, once per tenant before its first lookup
+     * by hash. The hash is only calculated in Java: the lower case of the database differs for non-ASCII characters.
+     */
+    private void fillLookupHashes() {
+        String tenant = TenantContextHolder.checkedGetIdentifier();
+        if (lookupHashTenants.contains(tenant))
+            return;
+
+        int filled = identifierRepository.fillLookupHashes(IDENTIFIER_BATCH_SIZE);
+        if (filled > 0)
+            logger.info("Lookup hash of {} identifiers of tenant {} was filled in", filled, tenant);
+        lookupHashTenants.add(tenant);
     }
 
-    public static Specification<InteropIdentifierEntity> subIdOrTypeEqual(String subIdOrType) {
-        return (Root<InteropIdentifierEntity> root, CriteriaQuery<?> query, CriteriaBuilder cb) -> {
-            Path<Object> path = root.get("subValueOrType");
-            return cb.and(subIdOrType == null ? cb.isNull(path) : cb.equal(path, subIdOrType));
-        };
+    public InteropIdentifierEntity findIdentifier(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        if (!identifierFilter.mightContain(idType, idValue, subIdOrType))
+            return null;
+        if (negativeLookupCache.isMissingIdentifier(idType, idValue, subIdOrType))
+            return null;
+
+        fillLookupHashes();
+        long lookupHash = InteropIdentifierEntity.calcLookupHash(idType, idValue, subIdOrType);
+        InteropIdentifierEntity identifier = identifierRepository.findByLookupHash(lookupHash).stream()
+                .filter(candidate -> candidate.matches(idType, idValue, subIdOrType))
+                .findFirst()
+                .orElse(null);
+        if (identifier == null)
+            negativeLookupCache.markMissingIdentifier(idType, idValue, subIdOrType);
+        return identifier;
     }
 
     @NotNull
@@ -752,7 +1257,7 @@ public class InteropService {
                                                                @NotNull LocalDateTime createdOn, boolean create) {
         //TODO: error handling
         String transactionCode = request.getTransactionCode();
-        InteropTransactionEntity transaction = transactionRepository.findOneByIdentifier(request.getTransactionCode());
+        InteropTransactionEntity transaction = accountWrapper.transaction;
         InteropState state = InteropStateMachine.handleTransition(transaction == null ? null : transaction.getState(), request.getActionType());
         LocalDateTime now = getNow();
         if (transaction == null) {
@@ -819,6 +1324,31 @@ public class InteropService {
         return null;
     }
 
+    /** Runs the task after the current transaction was committed, or immediately if there is no transaction */
+    /** Publishes the event for the other instances of the service once the change is committed */
+    private void sendEventAfterCommit(@NotNull String selectorValue, @NotNull Object payload) {
+        afterCommit(() -> {
+            try {
+                eventSender.sendEvent(EventConstants.OPERATION_HEADER, selectorValue, payload);
+            } catch (RuntimeException ex) {
+                logger.warn("Can not send interoperation event " + selectorValue, ex);
+            }
+        });
+    }
+
+    private void afterCommit(@NotNull Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+
     private LocalDateTime getNow() {
         return LocalDateTime.now(Clock.systemUTC());
     }
@@ -836,12 +1366,16 @@ public class InteropService {
         private final ProductDefinition productDefinition;
         @NotNull
         private final Double withdrawableBalance;
+        /** existing transaction of the request, null for a new one */
+        private final InteropTransactionEntity transaction;
 
-        public AccountWrapper(Account account, ProductInstance product, ProductDefinition productDefinition, Double withdrawableBalance) {
+        public AccountWrapper(Account account, ProductInstance product, ProductDefinition productDefinition, Double withdrawableBalance,
+                              InteropTransactionEntity transaction) {
             this.account = account;
             this.product = product;
             this.productDefinition = productDefinition;
             this.withdrawableBalance = withdrawableBalance;
+            this.transaction = transaction;
         }
     }
 }
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierEntity;
+
+import javax.validation.constraints.NotNull;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only, memory mapped snapshot of the identifier directory of a tenant.
+ * <p>
+ * File layout (big endian): header, index of (key hash, data offset) pairs sorted by hash, data records of
+ * (key length, key bytes, account length, account bytes), lengths are unsigned 16 bit. A lookup is a binary search on the index
+ * and a byte-wise comparison of the key in the mapped data, nothing is copied to the heap but the found account identifier.
+ * <p>
+ * The file is mapped in segments of 1 GiB, so its size is not limited by the int positions of a buffer. The segments overlap
+ * by more than the longest record, a record is always read from the segment where it starts.
+ * <p>
+ * The header holds the watermarks of the snapshot: the highest identifier id and the highest deletion log id included.
+ */
+public class IdentifierSnapshot {
+
+    private static final int MAGIC = 0x48494453; // HIDS
+    private static final int FORMAT_VERSION = 3; // 2: lower cased keys, 3: 16 bit account length
+    private static final int HEADER_SIZE = 48;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final byte SEPARATOR = 0x1f;
+    private static final int MAX_LENGTH = 0xffff;
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    /** longer than the longest record: two lengths and two values of at most {@link #MAX_LENGTH} bytes */
+    private static final int SEGMENT_OVERLAP = 1 << 18;
+
+    private final ByteBuffer[] segments;
+    private final int count;
+    private final long identifierWatermark;
+    private final long deletionWatermark;
+    private final long createdOn;
+    private final long dataStart;
+
+    private IdentifierSnapshot(@NotNull ByteBuffer[] segments) {
+        this.segments = segments;
+        ByteBuffer header = segments[0];
+        if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION)
+            throw new IllegalStateException("Not an identifier snapshot of version " + FORMAT_VERSION);
+        this.count = header.getInt(8);
+        this.identifierWatermark = header.getLong(16);
+        this.deletionWatermark = header.getLong(24);
+        this.createdOn = header.getLong(32);
+        this.dataStart = HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE;
+    }
+
+    /** Maps the snapshot file, the file can be replaced after this call */
+    @NotNull
+    public static IdentifierSnapshot open(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IllegalStateException("Identifier snapshot " + file + " is truncated");
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, SEGMENT_SIZE + SEGMENT_OVERLAP));
+            }
+            return new IdentifierSnapshot(segments);
+        }
+    }
+
+    @NotNull
+    public static Writer writer(@NotNull Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long getIdentifierWatermark() {
+        return identifierWatermark;
+    }
+
+    public long getDeletionWatermark() {
+        return deletionWatermark;
+    }
+
+    /** @return epoch millis of the creation of the snapshot */
+    public long getCreatedOn() {
+        return createdOn;
+    }
+
+    /** @return account identifier of the identifier or null if it is not in the snapshot */
+    public String find(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        byte[] key = encodeKey(idType, idValue, subIdOrType);
+        long hash = hash(key);
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) { // leftmost index entry with the hash
+            int mid = (low + high) >>> 1;
+            if (getLong(HEADER_SIZE + (long) mid * INDEX_ENTRY_SIZE) < hash)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        for (int i = low; i < count; i++) {
+            long position = HEADER_SIZE + (long) i * INDEX_ENTRY_SIZE;
+            if (getLong(position) != hash)
+                return null;
+            long record = dataStart + getLong(position + 8);
+            ByteBuffer segment = segment(record);
+            int offset = offset(record);
+            if (keyEquals(segment, offset, key))
+                return readAccount(segment, offset + 2 + key.length);
+        }
+        return null;
+    }
+
+    private long getLong(long position) {
+        return segment(position).getLong(offset(position));
+    }
+
+    private ByteBuffer segment(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)];
+    }
+
+    private static int offset(long position) {
+        return (int) (position & (SEGMENT_SIZE - 1));
+    }
+
+    private static boolean keyEquals(@NotNull ByteBuffer segment, int record, @NotNull byte[] key) {
+        if ((segment.getShort(record) & MAX_LENGTH) != key.length)
+            return false;
+        int start = record + 2;
+        for (int i = 0; i < key.length; i++) {
+            if (segment.get(start + i) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static String readAccount(@NotNull ByteBuffer segment, int position) {
+        int length = segment.getShort(position) & MAX_LENGTH;
+        byte[] account = new byte[length];
+        for (int i = 0; i < length; i++) {
+            account[i] = segment.get(position + 2 + i);
+        }
+        return new String(account, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encodeKey(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        byte[] value = InteropIdentifierEntity.normalizeKey(idValue).getBytes(StandardCharsets.UTF_8);
+        byte[] sub = subIdOrType == null ? null : InteropIdentifierEntity.normalizeKey(subIdOrType).getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[1 + value.length + (sub == null ? 0 : 1 + sub.length)];
+        key[0] = (byte) idType.ordinal();
+        System.arraycopy(value, 0, key, 1, value.length);
+        if (sub != null) {
+            key[1 + value.length] = SEPARATOR;
+            System.arraycopy(sub, 0, key, 2 + value.length, sub.length);
+        }
+        return key;
+    }
+
+    /** 64 bit FNV-1a */
+    private static long hash(@NotNull byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Writes a snapshot: the records are streamed to a temporary data file, the index is sorted in memory (16 bytes per
+     * identifier) and the final file is moved in place atomically.
+     */
+    public static class Writer implements AutoCloseable {
+
+        private final Path file;
+        private final Path dataFile;
+        private final DataOutputStream data;
+
+        private long[] hashes = new long[1024];
+        private long[] offsets = new long[1024];
+        private int count;
+        private long size;
+
+        private Writer(@NotNull Path file) throws IOException {
+            this.file = file;
+            this.dataFile = file.resolveSibling(file.getFileName() + ".data");
+            this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile), 1 << 16));
+        }
+
+        public void add(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType, @NotNull String accountId)
+                throws IOException {
+            byte[] key = encodeKey(idType, idValue, subIdOrType);
+            byte[] account = accountId.getBytes(StandardCharsets.UTF_8);
+            if (key.length > MAX_LENGTH || account.length > MAX_LENGTH)
+                throw new IllegalArgumentException("Identifier or account is too long for the snapshot: " + accountId);
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count << 1);
+                offsets = Arrays.copyOf(offsets, count << 1);
+            }
+            hashes[count] = hash(key);
+            offsets[count] = size;
+            count++;
+
+            data.writeShort(key.length);
+            data.write(key);
+            data.writeShort(account.length);
+            data.write(account);
+            size += 2 + key.length + 2 + account.length;
+        }
+
+        public void finish(long identifierWatermark, long deletionWatermark) throws IOException {
+            data.close();
+
+            sort(hashes, offsets, 0, count - 1);
+
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tempFile);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out, 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt(count);
+                output.writeInt(0);
+                output.writeLong(identifierWatermark);
+                output.writeLong(deletionWatermark);
+                output.writeLong(System.currentTimeMillis());
+                output.writeLong(0L);
+                for (int i = 0; i < count; i++) {
+                    output.writeLong(hashes[i]);
+                    output.writeLong(offsets[i]);
+                }
+                try (InputStream input = Files.newInputStream(dataFile)) {
+                    byte[] chunk = new byte[1 << 16];
+                    int read;
+                    while ((read = input.read(chunk)) > 0)
+                        output.write(chunk, 0, read);
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+            Files.deleteIfExists(dataFile);
+        }
+
+        /** Sorts the hashes and moves the offsets along, quicksort on the parallel arrays */
+        private static void sort(long[] hashes, long[] offsets, int low, int high) {
+            while (low < high) {
+                long pivot = hashes[(low + high) >>> 1];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (hashes[i] < pivot)
+                        i++;
+                    while (hashes[j] > pivot)
+                        j--;
+                    if (i <= j) {
+                        long hash = hashes[i];
+                        hashes[i] = hashes[j];
+                        hashes[j] = hash;
+                        long offset = offsets[i];
+                        offsets[i] = offsets[j];
+                        offsets[j] = offset;
+                        i++;
+                        j--;
+                    }
+                }
+                // recurse into the smaller part, loop on the larger one
+                if (j - low < high - i) {
+                    sort(hashes, offsets, low, j);
+                    low = i;
+                } else {
+                    sort(hashes, offsets, i, high);
+                    high = j;
+                }
+            }
+        }
+    }
+}
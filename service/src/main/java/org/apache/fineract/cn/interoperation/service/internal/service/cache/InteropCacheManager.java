@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import com.google.common.cache.CacheStats;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Creates and keeps track of the {@link TenantCache}s of the service.
+ * Size and time to live can be overridden with the properties
+ * interoperation.cache.[name].maximumSize and interoperation.cache.[name].expireAfterWrite (seconds).
+ */
+@Component
+public class InteropCacheManager {
+
+    public static final String PROPERTY_PREFIX = "interoperation.cache.";
+
+    private final Logger logger;
+    private final Environment environment;
+
+    private final Map<String, TenantCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InteropCacheManager(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                               Environment environment) {
+        this.logger = logger;
+        this.environment = environment;
+    }
+
+    @NotNull
+    public <K, V> TenantCache<K, V> createCache(@NotNull String name, long defaultMaximumSize, long defaultExpireAfterWrite) {
+        return createCache(name, defaultMaximumSize, defaultExpireAfterWrite, null);
+    }
+
+    /** @param grouping group of a value to index the keys by, see {@link TenantCache#invalidateGroup(Object)} */
+    @NotNull
+    public <K, V> TenantCache<K, V> createCache(@NotNull String name, long defaultMaximumSize, long defaultExpireAfterWrite,
+                                                Function<? super V, ?> grouping) {
+        long maximumSize = environment.getProperty(PROPERTY_PREFIX + name + ".maximumSize", Long.class, defaultMaximumSize);
+        long expireAfterWrite = environment.getProperty(PROPERTY_PREFIX + name + ".expireAfterWrite", Long.class, defaultExpireAfterWrite);
+
+        TenantCache<K, V> cache = new TenantCache<>(name, maximumSize, expireAfterWrite, grouping);
+        if (caches.putIfAbsent(name, cache) != null)
+            throw new IllegalStateException("Cache " + name + " is already registered");
+
+        logger.info("Cache {} created with maximum size {} and time to live {}s", name, maximumSize, expireAfterWrite);
+        return cache;
+    }
+
+    public TenantCache<?, ?> getCache(@NotNull String name) {
+        return caches.get(name);
+    }
+
+    public Collection<TenantCache<?, ?>> getCaches() {
+        return Collections.unmodifiableCollection(caches.values());
+    }
+
+    /** @return hit, miss, load and eviction counters by cache name */
+    public Map<String, CacheStats> getStatistics() {
+        Map<String, CacheStats> statistics = new TreeMap<>();
+        caches.forEach((name, cache) -> statistics.put(name, cache.stats()));
+        return statistics;
+    }
+}
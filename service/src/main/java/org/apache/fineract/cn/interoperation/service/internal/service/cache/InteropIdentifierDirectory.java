@@ -0,0 +1,471 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierDeletionEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierDeletionRepository;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierRepository;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory directory of the party identifiers: (type, value, subIdOrType) -> customer account identifier, per tenant.
+ * <p>
+ * The directory is filled on the first lookup of an identifier and by a background load of the whole table, and kept current
+ * on register and delete. A hit is served from memory, a miss has to be checked in the database, because the identifier
+ * could have been registered on an other instance of the service.
+ * <p>
+ * MSISDNs without sub-identifier, the bulk of the identifiers, are held in a compact {@link MsisdnIndex}, every other identifier
+ * in a map.
+ * <p>
+ * Every removal increments the version of the tenant directory. An entry read from the database by a lookup is only added when
+ * no removal happened since the read was started, so a concurrent delete can not be overwritten by a stale read. The background
+ * load keeps the removals during its replay as tombstones instead, so it makes progress under a steady stream of deletes.
+ * <p>
+ * When a snapshot directory is configured, the background load writes a memory mapped {@link IdentifierSnapshot} of the tenant
+ * instead of filling the memory. On restart the snapshot is mapped again and only the identifiers inserted and deleted (from
+ * hathor_identifier_deletions) since its watermarks are replayed. The in-memory entries are an overlay on the snapshot,
+ * removed snapshot entries are masked by tombstones.
+ */
+@Component
+public class InteropIdentifierDirectory {
+
+    /** rows replayed before the watermarks, ids are generated before commit, so they are not committed in order */
+    private static final long REPLAY_MARGIN = 1000L;
+    /** first delay after a failed load, doubled on every further failure */
+    private static final long LOAD_RETRY_DELAY = 30_000L;
+    private static final long MAX_LOAD_RETRY_DELAY = 3_600_000L;
+
+    private final Logger logger;
+    private final InteropIdentifierRepository identifierRepository;
+    private final InteropIdentifierDeletionRepository deletionRepository;
+    private final boolean preload;
+    private final int pageSize;
+    private final Path snapshotDirectory;
+    private final long snapshotMaxAge;
+    private final int maxRemovedAccounts;
+
+    private final Map<String, TenantDirectory> directories = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InteropIdentifierDirectory(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                                      InteropIdentifierRepository identifierRepository,
+                                      InteropIdentifierDeletionRepository deletionRepository,
+                                      @Value("${interoperation.identifierDirectory.preload:true}") boolean preload,
+                                      @Value("${interoperation.identifierDirectory.pageSize:1000}") int pageSize,
+                                      @Value("${interoperation.identifierDirectory.snapshot.directory:}") String snapshotDirectory,
+                                      @Value("${interoperation.identifierDirectory.snapshot.maxAge:86400}") long snapshotMaxAge,
+                                      @Value("${interoperation.identifierDirectory.snapshot.maxRemovedAccounts:10000}") int maxRemovedAccounts) {
+        this.logger = logger;
+        this.identifierRepository = identifierRepository;
+        this.deletionRepository = deletionRepository;
+        this.preload = preload;
+        this.pageSize = pageSize;
+        this.snapshotDirectory = snapshotDirectory == null || snapshotDirectory.isEmpty() ? null : Paths.get(snapshotDirectory);
+        this.snapshotMaxAge = snapshotMaxAge;
+        this.maxRemovedAccounts = maxRemovedAccounts;
+    }
+
+    /** @return customer account identifier registered for the identifier or null if it is not known by the directory */
+    public String find(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        TenantDirectory directory = getDirectory();
+        String accountId = isIndexed(idType, idValue, subIdOrType)
+                ? directory.msisdnIndex.get(idValue)
+                : directory.entries.get(new IdentifierKey(idType, idValue, subIdOrType));
+        IdentifierSnapshot snapshot = directory.snapshot;
+        if (accountId != null || snapshot == null)
+            return accountId;
+
+        if (!directory.removed.isEmpty() && directory.removed.contains(new IdentifierKey(idType, idValue, subIdOrType)))
+            return null;
+        accountId = snapshot.find(idType, idValue, subIdOrType);
+        return accountId == null || directory.removedAccounts.contains(accountId) ? null : accountId;
+    }
+
+    /** @return the current version of the directory, to be passed to {@link #put(InteropIdentifierEntity, long)} after a database read */
+    public long getVersion() {
+        return getDirectory().version.get();
+    }
+
+    /** Adds an identifier read from the database, if nothing was removed since the given version */
+    public void put(@NotNull InteropIdentifierEntity identifier, long version) {
+        TenantDirectory directory = getDirectory();
+        synchronized (directory) {
+            if (directory.version.get() == version)
+                directory.put(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType(), identifier.getCustomerAccountIdentifier(), true);
+        }
+    }
+
+    /** Adds a committed registration */
+    public void put(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType, @NotNull String accountId) {
+        getDirectory().put(idType, idValue, subIdOrType, accountId, true);
+    }
+
+    public void remove(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        TenantDirectory directory = getDirectory();
+        synchronized (directory) {
+            directory.version.incrementAndGet();
+            directory.remove(idType, idValue, subIdOrType);
+        }
+    }
+
+    /**
+     * Removes all the identifiers of the account, they are read again from the database on next lookup.
+     * <p>
+     * Snapshot entries of the account are masked until the next snapshot is written, too many masked accounts force a rewrite.
+     */
+    public void removeAccount(@NotNull String accountId) {
+        TenantDirectory directory = getDirectory();
+        synchronized (directory) {
+            directory.version.incrementAndGet();
+            if (directory.replayRemovedAccounts != null)
+                directory.replayRemovedAccounts.add(accountId);
+            directory.msisdnIndex.removeAccount(accountId);
+            directory.entries.values().removeIf(accountId::equals);
+            if (directory.snapshot != null && directory.removedAccounts.add(accountId)
+                    && directory.removedAccounts.size() > maxRemovedAccounts && !directory.rewriteSnapshot) {
+                directory.rewriteSnapshot = true;
+                directory.nextLoadAttempt = 0L;
+                directory.loadRequested.set(false);
+            }
+        }
+    }
+
+    public void clear() {
+        TenantDirectory directory = getDirectory();
+        synchronized (directory) {
+            directory.version.incrementAndGet();
+            directory.entries.clear();
+            directory.msisdnIndex.clear();
+            directory.removed.clear();
+            directory.removedAccounts.clear();
+            directory.snapshot = null;
+            directory.rewriteSnapshot = false;
+            directory.loadFailures = 0;
+            directory.nextLoadAttempt = 0L;
+            directory.loadRequested.set(false);
+        }
+    }
+
+    public int size() {
+        TenantDirectory directory = getDirectory();
+        IdentifierSnapshot snapshot = directory.snapshot;
+        return directory.entries.size() + directory.msisdnIndex.size() + (snapshot == null ? 0 : snapshot.size());
+    }
+
+    /**
+     * @return true if the background load of the current tenant should be started: once per tenant, again after a failed load
+     * once its backoff passed, and when the snapshot has to be rewritten
+     */
+    public boolean requestLoad() {
+        if (!preload)
+            return false;
+        TenantDirectory directory = getDirectory();
+        return System.currentTimeMillis() >= directory.nextLoadAttempt && directory.loadRequested.compareAndSet(false, true);
+    }
+
+    @Async
+    public void loadAsync() {
+        TenantDirectory directory = getDirectory();
+        try {
+            load();
+            directory.loadFailures = 0;
+        } catch (RuntimeException ex) {
+            int failures = ++directory.loadFailures;
+            long delay = Math.min(MAX_LOAD_RETRY_DELAY, LOAD_RETRY_DELAY << Math.min(failures - 1, 16));
+            logger.warn("Can not load the identifier directory of tenant " + TenantContextHolder.checkedGetIdentifier()
+                    + ", retry in " + delay / 1000 + "s", ex);
+            directory.nextLoadAttempt = System.currentTimeMillis() + delay;
+            directory.loadRequested.set(false);
+        }
+    }
+
+    /**
+     * Loads the identifiers of the current tenant: from the snapshot if configured, or else all of them into the memory.
+     * When the snapshot can not be written, the identifiers are loaded into the memory.
+     */
+    public void load() {
+        TenantDirectory directory = getDirectory();
+        if (snapshotDirectory == null) {
+            loadHeap(directory);
+            return;
+        }
+
+        IdentifierSnapshot snapshot = directory.rewriteSnapshot ? null : openSnapshot();
+        boolean written = snapshot == null;
+        if (written) {
+            try {
+                snapshot = writeSnapshot();
+            } catch (RuntimeException ex) {
+                logger.warn("Can not write the identifier snapshot of tenant " + TenantContextHolder.checkedGetIdentifier()
+                        + ", the identifiers are loaded into the memory", ex);
+                synchronized (directory) {
+                    directory.version.incrementAndGet();
+                    directory.snapshot = null;
+                    directory.removed.clear();
+                    directory.removedAccounts.clear();
+                    directory.rewriteSnapshot = false;
+                }
+                loadHeap(directory);
+                return;
+            }
+        }
+        synchronized (directory) {
+            if (written || directory.snapshot != snapshot) {
+                // removals before the new snapshot are either in it or replayed from the deletion log below
+                directory.removed.clear();
+                directory.removedAccounts.clear();
+                directory.rewriteSnapshot = false;
+            }
+            directory.snapshot = snapshot;
+        }
+        // inserts first: a deleted identifier must not be added back by the insert replay
+        int inserted = replayIdentifiers(directory, Math.max(0L, snapshot.getIdentifierWatermark() - REPLAY_MARGIN));
+        int deleted = replayDeletions(directory, Math.max(0L, snapshot.getDeletionWatermark() - REPLAY_MARGIN));
+
+        logger.info("Identifier directory of tenant {} was loaded from snapshot with {} identifiers, replayed {} inserts and {} deletes",
+                TenantContextHolder.checkedGetIdentifier(), snapshot.size(), inserted, deleted);
+    }
+
+    private void loadHeap(@NotNull TenantDirectory directory) {
+        int count = replayIdentifiers(directory, 0L);
+        logger.info("Identifier directory of tenant {} was loaded with {} identifiers, {} MSISDNs in {} bytes of index",
+                TenantContextHolder.checkedGetIdentifier(), count, directory.msisdnIndex.size(), directory.msisdnIndex.getTableSize());
+    }
+
+    /**
+     * Adds the identifiers with id greater than the given one to the memory, page by page in the order of the id.
+     * The removals during the replay are kept as tombstones, a row read before its removal is not added.
+     */
+    private int replayIdentifiers(@NotNull TenantDirectory directory, long fromId) {
+        synchronized (directory) {
+            directory.replayRemoved = new HashSet<>();
+            directory.replayRemovedAccounts = new HashSet<>();
+        }
+        try {
+            long lastId = fromId;
+            int count = 0;
+            while (true) {
+                List<InteropIdentifierEntity> page = identifierRepository.findByIdGreaterThanOrderByIdAsc(lastId, new PageRequest(0, pageSize));
+                synchronized (directory) {
+                    for (InteropIdentifierEntity identifier : page) {
+                        if (directory.replayRemovedAccounts.contains(identifier.getCustomerAccountIdentifier())
+                                || directory.replayRemoved.contains(new IdentifierKey(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType())))
+                            continue;
+                        directory.put(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType(),
+                                identifier.getCustomerAccountIdentifier(), false);
+                    }
+                }
+                count += page.size();
+                if (page.size() < pageSize)
+                    return count;
+                lastId = page.get(page.size() - 1).getId();
+            }
+        } finally {
+            synchronized (directory) {
+                directory.replayRemoved = null;
+                directory.replayRemovedAccounts = null;
+            }
+        }
+    }
+
+    /** Removes the identifiers deleted with deletion log id greater than the given one */
+    private int replayDeletions(@NotNull TenantDirectory directory, long fromId) {
+        long lastId = fromId;
+        int count = 0;
+        while (true) {
+            List<InteropIdentifierDeletionEntity> page = deletionRepository.findByIdGreaterThanOrderByIdAsc(lastId, new PageRequest(0, pageSize));
+            synchronized (directory) {
+                directory.version.incrementAndGet();
+                for (InteropIdentifierDeletionEntity deletion : page) {
+                    directory.remove(deletion.getType(), deletion.getValue(), deletion.getSubValueOrType());
+                }
+            }
+            count += page.size();
+            if (page.size() < pageSize)
+                return count;
+            lastId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    /** @return the snapshot of the tenant or null if there is no usable one */
+    private IdentifierSnapshot openSnapshot() {
+        Path file = getSnapshotFile();
+        if (!Files.exists(file))
+            return null;
+        try {
+            IdentifierSnapshot snapshot = IdentifierSnapshot.open(file);
+            if (System.currentTimeMillis() - snapshot.getCreatedOn() > snapshotMaxAge * 1000L) {
+                logger.info("Identifier snapshot {} is older than {}s, it is rebuilt", file, snapshotMaxAge);
+                return null;
+            }
+            return snapshot;
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Can not open identifier snapshot " + file + ", it is rebuilt", ex);
+            return null;
+        }
+    }
+
+    /** Writes a new snapshot of the tenant from the database, with a full scan of hathor_identifiers in the order of the id */
+    private IdentifierSnapshot writeSnapshot() {
+        Path file = getSnapshotFile();
+        InteropIdentifierDeletionEntity lastDeletion = deletionRepository.findTopByOrderByIdDesc();
+        long deletionWatermark = lastDeletion == null ? 0L : lastDeletion.getId();
+        long lastId = 0L;
+        try {
+            Files.createDirectories(snapshotDirectory);
+            try (IdentifierSnapshot.Writer writer = IdentifierSnapshot.writer(file)) {
+                while (true) {
+                    List<InteropIdentifierEntity> page = identifierRepository.findByIdGreaterThanOrderByIdAsc(lastId, new PageRequest(0, pageSize));
+                    for (InteropIdentifierEntity identifier : page) {
+                        writer.add(identifier.getType(), identifier.getValue(), identifier.getSubValueOrType(), identifier.getCustomerAccountIdentifier());
+                    }
+                    if (!page.isEmpty())
+                        lastId = page.get(page.size() - 1).getId();
+                    if (page.size() < pageSize)
+                        break;
+                }
+                writer.finish(lastId, deletionWatermark);
+            }
+            // older deletions are not needed by any usable snapshot
+            deletionRepository.deleteOlderThan(LocalDateTime.now(Clock.systemUTC()).minusSeconds(snapshotMaxAge * 2));
+            return IdentifierSnapshot.open(file);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not write identifier snapshot " + file, ex);
+        }
+    }
+
+    private Path getSnapshotFile() {
+        return snapshotDirectory.resolve(TenantContextHolder.checkedGetIdentifier().replaceAll("[^A-Za-z0-9_-]", "_") + ".identifiers");
+    }
+
+    private TenantDirectory getDirectory() {
+        return directories.computeIfAbsent(TenantContextHolder.checkedGetIdentifier(), tenant -> new TenantDirectory());
+    }
+
+    private static boolean isIndexed(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        return idType == InteropIdentifierType.MSISDN && subIdOrType == null && MsisdnIndex.isPackable(idValue);
+    }
+
+    private static final class TenantDirectory {
+        private final Map<IdentifierKey, String> entries = new ConcurrentHashMap<>();
+        private final MsisdnIndex msisdnIndex = new MsisdnIndex();
+        private volatile IdentifierSnapshot snapshot;
+        /** snapshot entries which are removed */
+        private final Set<IdentifierKey> removed = ConcurrentHashMap.newKeySet();
+        /** accounts whose snapshot entries are removed */
+        private final Set<String> removedAccounts = ConcurrentHashMap.newKeySet();
+        private final AtomicLong version = new AtomicLong();
+        private final AtomicBoolean loadRequested = new AtomicBoolean();
+        /** set when too many accounts are masked, the next load writes a new snapshot */
+        private volatile boolean rewriteSnapshot;
+        private volatile int loadFailures;
+        private volatile long nextLoadAttempt;
+        /** removals while identifiers are replayed from the database, null if no replay is running, guarded by the directory */
+        private Set<IdentifierKey> replayRemoved;
+        private Set<String> replayRemovedAccounts;
+
+        private void put(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType, @NotNull String accountId,
+                         boolean replace) {
+            if (isIndexed(idType, idValue, subIdOrType)) {
+                if (replace)
+                    msisdnIndex.put(idValue, accountId);
+                else
+                    msisdnIndex.putIfAbsent(idValue, accountId);
+            } else {
+                IdentifierKey key = new IdentifierKey(idType, idValue, subIdOrType);
+                if (replace)
+                    entries.put(key, accountId);
+                else
+                    entries.putIfAbsent(key, accountId);
+            }
+            if (!removed.isEmpty())
+                removed.remove(new IdentifierKey(idType, idValue, subIdOrType));
+        }
+
+        private void remove(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+            if (isIndexed(idType, idValue, subIdOrType))
+                msisdnIndex.remove(idValue);
+            else
+                entries.remove(new IdentifierKey(idType, idValue, subIdOrType));
+            if (snapshot != null)
+                removed.add(new IdentifierKey(idType, idValue, subIdOrType));
+            if (replayRemoved != null)
+                replayRemoved.add(new IdentifierKey(idType, idValue, subIdOrType));
+        }
+    }
+
+    private static final class IdentifierKey {
+        @NotNull
+        private final InteropIdentifierType type;
+        @NotNull
+        private final String value;
+        private final String subValueOrType;
+
+        private IdentifierKey(@NotNull InteropIdentifierType type, @NotNull String value, String subValueOrType) {
+            this.type = type;
+            this.value = InteropIdentifierEntity.normalizeKey(value);
+            this.subValueOrType = InteropIdentifierEntity.normalizeKey(subValueOrType);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            IdentifierKey that = (IdentifierKey) o;
+
+            if (type != that.type) return false;
+            if (!value.equals(that.value)) return false;
+            return subValueOrType != null ? subValueOrType.equals(that.subValueOrType) : that.subValueOrType == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type.hashCode();
+            result = 31 * result + value.hashCode();
+            result = 31 * result + (subValueOrType != null ? subValueOrType.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierRepository;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per tenant, per identifier type Bloom filters of the registered party identifiers. A negative answer means the identifier is
+ * surely not registered, so the lookup can be answered without a database query.
+ * <p>
+ * The filters are built in the background from hathor_identifiers on the first lookup of the tenant, until then every identifier
+ * might be contained. Registrations are added immediately, before commit. A Bloom filter can not forget, so deleted identifiers
+ * only make the filter less selective: the filters are rebuilt when the deletes or the insertions over the planned capacity
+ * degrade the false positive rate, and after maxAge seconds, to recover registrations whose events were lost on the topic.
+ * When the event listener loses its connection the filters of every tenant are dropped, they are rebuilt after the reconnect.
+ * <p>
+ * The filters are read under the read lock and modified under the write lock of the tenant.
+ */
+@Component
+public class InteropIdentifierFilter {
+
+    private static final char SEPARATOR = '\u001f';
+
+    private final Logger logger;
+    private final InteropIdentifierRepository identifierRepository;
+    private final double falsePositiveRate;
+    private final int pageSize;
+    private final long maxAge;
+
+    private final Map<String, TenantFilter> filters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InteropIdentifierFilter(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                                   InteropIdentifierRepository identifierRepository,
+                                   @Value("${interoperation.identifierFilter.falsePositiveRate:0.01}") double falsePositiveRate,
+                                   @Value("${interoperation.identifierDirectory.pageSize:1000}") int pageSize,
+                                   @Value("${interoperation.identifierFilter.maxAge:3600}") long maxAge) {
+        this.logger = logger;
+        this.identifierRepository = identifierRepository;
+        this.falsePositiveRate = falsePositiveRate;
+        this.pageSize = pageSize;
+        this.maxAge = maxAge;
+    }
+
+    /** @return false if the identifier is surely not registered */
+    public boolean mightContain(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        TenantFilter tenantFilter = getFilter();
+        Lock lock = tenantFilter.lock.readLock();
+        lock.lock();
+        try {
+            Map<InteropIdentifierType, BloomFilter<CharSequence>> typeFilters = tenantFilter.typeFilters;
+            if (typeFilters == null)
+                return true;
+            BloomFilter<CharSequence> filter = typeFilters.get(idType);
+            return filter == null || filter.mightContain(filterKey(idValue, subIdOrType));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Adds a registered identifier, must be called before the registration is committed */
+    public void put(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        TenantFilter tenantFilter = getFilter();
+        Lock lock = tenantFilter.lock.writeLock();
+        lock.lock();
+        try {
+            if (tenantFilter.pending != null)
+                tenantFilter.pending.add(new String[]{idType.name(), filterKey(idValue, subIdOrType)});
+            Map<InteropIdentifierType, BloomFilter<CharSequence>> typeFilters = tenantFilter.typeFilters;
+            if (typeFilters == null)
+                return;
+            BloomFilter<CharSequence> filter = typeFilters.get(idType);
+            if (filter == null)
+                tenantFilter.typeFilters = null; // type was not planned, bypass until rebuilt
+            else {
+                filter.put(filterKey(idValue, subIdOrType));
+                tenantFilter.insertions++;
+            }
+            if (tenantFilter.typeFilters == null || tenantFilter.insertions > tenantFilter.capacity)
+                tenantFilter.stale = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records a deleted identifier, the filters get rebuilt when there are too many */
+    public void recordRemoval() {
+        recordRemovals(1);
+    }
+
+    /** Records deleted identifiers, the filters get rebuilt when there are too many */
+    public void recordRemovals(int count) {
+        TenantFilter tenantFilter = getFilter();
+        Lock lock = tenantFilter.lock.writeLock();
+        lock.lock();
+        try {
+            tenantFilter.removals += count;
+            if (tenantFilter.removals > tenantFilter.capacity / 10)
+                tenantFilter.stale = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return true if the filters of the current tenant have to be (re)built, only once until the build has finished */
+    public boolean requestBuild() {
+        TenantFilter tenantFilter = getFilter();
+        boolean expired = maxAge > 0 && System.currentTimeMillis() - tenantFilter.builtAt > maxAge * 1000;
+        return (tenantFilter.typeFilters == null || tenantFilter.stale || expired) && tenantFilter.buildRequested.compareAndSet(false, true);
+    }
+
+    @Async
+    public void buildAsync() {
+        try {
+            build();
+        } catch (RuntimeException ex) {
+            logger.warn("Can not build the identifier filter", ex);
+        } finally {
+            getFilter().buildRequested.set(false);
+        }
+    }
+
+    /**
+     * Builds new filters of the current tenant from the database. Registrations done during the build are collected and added
+     * to the new filters before they replace the old ones. The new filters are dropped if the filters were cleared during the build.
+     */
+    public void build() {
+        TenantFilter tenantFilter = getFilter();
+        Lock lock = tenantFilter.lock.writeLock();
+        long generation;
+        lock.lock();
+        try {
+            tenantFilter.pending = new ArrayList<>();
+            generation = tenantFilter.generation;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            Map<InteropIdentifierType, BloomFilter<CharSequence>> typeFilters = new EnumMap<>(InteropIdentifierType.class);
+            long capacity = 0;
+            for (InteropIdentifierType type : InteropIdentifierType.values()) {
+                long expected = Math.max(identifierRepository.countByType(type) * 2, 1000);
+                typeFilters.put(type, BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expected, falsePositiveRate));
+                capacity += expected;
+            }
+
+            long count = 0;
+            long lastId = 0L;
+            while (true) {
+                List<InteropIdentifierEntity> page = identifierRepository.findByIdGreaterThanOrderByIdAsc(lastId, new PageRequest(0, pageSize));
+                for (InteropIdentifierEntity identifier : page) {
+                    typeFilters.get(identifier.getType()).put(filterKey(identifier.getValue(), identifier.getSubValueOrType()));
+                }
+                count += page.size();
+                if (page.size() < pageSize)
+                    break;
+                lastId = page.get(page.size() - 1).getId();
+            }
+
+            lock.lock();
+            try {
+                if (tenantFilter.generation != generation) {
+                    logger.info("Identifier filter of tenant {} was cleared during the build", TenantContextHolder.checkedGetIdentifier());
+                    return;
+                }
+                for (String[] registered : tenantFilter.pending) {
+                    typeFilters.get(InteropIdentifierType.valueOf(registered[0])).put(registered[1]);
+                }
+                tenantFilter.typeFilters = typeFilters;
+                tenantFilter.capacity = capacity;
+                tenantFilter.insertions = count + tenantFilter.pending.size();
+                tenantFilter.removals = 0;
+                tenantFilter.stale = false;
+                tenantFilter.builtAt = System.currentTimeMillis();
+            } finally {
+                lock.unlock();
+            }
+            logger.info("Identifier filter of tenant {} was built with {} identifiers", TenantContextHolder.checkedGetIdentifier(), count);
+        } finally {
+            lock.lock();
+            try {
+                tenantFilter.pending = null;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** Drops the filters of the current tenant, every identifier might be contained until they are built again */
+    public void clear() {
+        clear(getFilter());
+    }
+
+    /** Drops the filters of every tenant, to be called when registration events might have been lost */
+    public void clearAll() {
+        filters.values().forEach(InteropIdentifierFilter::clear);
+        logger.info("Identifier filters of all tenants were dropped");
+    }
+
+    private static void clear(@NotNull TenantFilter tenantFilter) {
+        Lock lock = tenantFilter.lock.writeLock();
+        lock.lock();
+        try {
+            tenantFilter.typeFilters = null;
+            tenantFilter.stale = true;
+            tenantFilter.generation++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TenantFilter getFilter() {
+        return filters.computeIfAbsent(TenantContextHolder.checkedGetIdentifier(), tenant -> new TenantFilter());
+    }
+
+    private static String filterKey(@NotNull String idValue, String subIdOrType) {
+        String value = InteropIdentifierEntity.normalizeKey(idValue);
+        return subIdOrType == null ? value : (value + SEPARATOR + InteropIdentifierEntity.normalizeKey(subIdOrType));
+    }
+
+    private static final class TenantFilter {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        /** null until built */
+        private volatile Map<InteropIdentifierType, BloomFilter<CharSequence>> typeFilters;
+        private final AtomicBoolean buildRequested = new AtomicBoolean();
+        /** registrations during the build: type name, filter key */
+        private List<String[]> pending;
+        private long capacity;
+        private long insertions;
+        private long removals;
+        private volatile boolean stale;
+        private volatile long builtAt;
+        /** incremented when the filters are dropped, a build started before is not installed */
+        private long generation;
+    }
+}
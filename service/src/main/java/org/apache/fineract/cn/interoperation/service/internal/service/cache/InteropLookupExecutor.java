@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import org.apache.fineract.cn.api.util.UserContext;
+import org.apache.fineract.cn.api.util.UserContextHolder;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent remote lookups (ledger and deposit reads) of a command in parallel on a bounded pool.
+ * The tenant, the user and the {@link LookupContext} of the command are propagated to the lookup threads.
+ * When the pool and its queue are full, the lookup runs on the calling thread.
+ * <p>
+ * The lookups of a command are grouped in a {@link LookupStage}, which joins them within the deadline of the stage.
+ */
+@Component
+public class InteropLookupExecutor {
+
+    private final Logger logger;
+    private final ThreadPoolExecutor executor;
+    private final long timeout;
+
+    @Autowired
+    public InteropLookupExecutor(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                                 @Value("${interoperation.lookup.threads:16}") int threads,
+                                 @Value("${interoperation.lookup.queueCapacity:256}") int queueCapacity,
+                                 @Value("${interoperation.lookup.timeout:10000}") long timeout) {
+        this.logger = logger;
+        this.timeout = timeout;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                new LookupThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Opens a stage of parallel lookups, with deadline after the configured timeout (milliseconds) */
+    @NotNull
+    public LookupStage openStage() {
+        return new LookupStage(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> Future<T> submit(@NotNull Supplier<T> lookup) {
+        String tenant = TenantContextHolder.identifier().orElse(null);
+        Optional<UserContext> userContext = UserContextHolder.getUserContext();
+        LookupContext lookupContext = LookupContext.current();
+        Thread caller = Thread.currentThread();
+
+        return executor.submit(() -> {
+            if (Thread.currentThread() == caller) // rejected by the pool, runs on the caller thread with its own context
+                return lookup.get();
+
+            if (tenant != null)
+                TenantContextHolder.setIdentifier(tenant);
+            userContext.ifPresent(UserContextHolder::setUserContext);
+            LookupContext previous = LookupContext.bind(lookupContext);
+            try {
+                return lookup.get();
+            } finally {
+                LookupContext.bind(previous);
+                UserContextHolder.clear();
+                TenantContextHolder.clear();
+            }
+        });
+    }
+
+    /**
+     * Lookups of one command. A lookup of the stage can prefetch the entities depending on its result.
+     * Closing the stage waits for the prefetches and cancels the lookups still running after the deadline.
+     */
+    public final class LookupStage implements AutoCloseable {
+
+        private final long deadline;
+        private final List<Future<?>> futures = new CopyOnWriteArrayList<>();
+        private final List<Future<?>> prefetches = new CopyOnWriteArrayList<>();
+
+        private LookupStage(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /** Starts a lookup, its result or failure is returned by {@link #join(Future)} */
+        @NotNull
+        public <T> Future<T> submit(@NotNull Supplier<T> lookup) {
+            Future<T> future = InteropLookupExecutor.this.submit(lookup);
+            futures.add(future);
+            return future;
+        }
+
+        /**
+         * Starts a lookup only to memoize its result in the lookup context of the command, the later lookup of the same
+         * entity is served from the context. Failures are ignored, the later lookup fails the same way.
+         */
+        public void prefetch(@NotNull Runnable lookup) {
+            prefetches.add(InteropLookupExecutor.this.submit(() -> {
+                try {
+                    lookup.run();
+                } catch (RuntimeException ex) {
+                    logger.debug("Prefetch failed: {}", ex.getMessage());
+                }
+                return null;
+            }));
+        }
+
+        /** @return the result of the lookup, the failure of the lookup is thrown as it was thrown by the lookup itself */
+        public <T> T join(@NotNull Future<T> future) {
+            try {
+                return future.get(remaining(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw new IllegalStateException("Remote lookup failed", cause);
+            } catch (TimeoutException ex) {
+                future.cancel(true);
+                throw new IllegalStateException("Remote lookup did not finish in time");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Remote lookup was interrupted");
+            } catch (CancellationException ex) {
+                throw new IllegalStateException("Remote lookup was cancelled");
+            }
+        }
+
+        private long remaining() {
+            return Math.max(0, deadline - System.nanoTime());
+        }
+
+        @Override
+        public void close() {
+            for (Future<?> prefetch : prefetches) {
+                try {
+                    prefetch.get(remaining(), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException | CancellationException ex) {
+                    // ignored, see prefetch
+                } catch (TimeoutException ex) {
+                    prefetch.cancel(true);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            futures.forEach(future -> future.cancel(true));
+            prefetches.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static final class LookupThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "interop-lookup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
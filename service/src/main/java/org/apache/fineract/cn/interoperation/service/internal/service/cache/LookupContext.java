@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes the remote lookups (ledger and deposit reads) for the duration of one command.
+ * The context is bound to the thread processing the command, and to the {@link InteropLookupExecutor} threads doing lookups
+ * for the command. It is discarded when the command finishes, so nothing is shared between requests.
+ * Lookups outside of an open context are not memoized.
+ */
+public class LookupContext implements AutoCloseable {
+
+    private static final ThreadLocal<LookupContext> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger savedLookups = new AtomicInteger();
+
+    private LookupContext() {
+    }
+
+    /** Opens a new context for the current thread, replacing the current one if any */
+    @NotNull
+    public static LookupContext open() {
+        LookupContext context = new LookupContext();
+        CURRENT.set(context);
+        return context;
+    }
+
+    public static LookupContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the context to the current thread, to share the context of a command with the threads doing its lookups.
+     * @return the context bound before, to be restored after the lookup
+     */
+    static LookupContext bind(LookupContext context) {
+        LookupContext previous = CURRENT.get();
+        if (context == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(context);
+        return previous;
+    }
+
+    /** @return the memoized result of the lookup in the current context, or calls the loader. Null result is not memoized. */
+    public static <T> T lookup(@NotNull String kind, @NotNull String key, @NotNull Supplier<T> loader) {
+        LookupContext context = CURRENT.get();
+        return context == null ? loader.get() : context.get(kind, key, loader);
+    }
+
+    /** Forgets the memoized result in the current context, to be called after the remote entity was modified */
+    public static void evict(@NotNull String kind, @NotNull String key) {
+        LookupContext context = CURRENT.get();
+        if (context != null)
+            context.values.remove(kind + ':' + key);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NotNull String kind, @NotNull String key, @NotNull Supplier<T> loader) {
+        lookups.incrementAndGet();
+
+        String valueKey = kind + ':' + key;
+        T value = (T) values.get(valueKey);
+        if (value != null) {
+            savedLookups.incrementAndGet();
+            return value;
+        }
+        value = loader.get();
+        if (value != null)
+            values.putIfAbsent(valueKey, value);
+        return value;
+    }
+
+    /** @return number of lookups requested in this context */
+    public int getLookups() {
+        return lookups.get();
+    }
+
+    /** @return number of lookups served from this context without calling the remote service */
+    public int getSavedLookups() {
+        return savedLookups.get();
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() == this)
+            CURRENT.remove();
+        values.clear();
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Compact MSISDN -> account identifier map. An MSISDN of at most 15 digits is packed into a long key (number of digits in the
+ * high bits, so leading zeros are kept), stored in an open addressing table with linear probing. Values are int offsets into
+ * a byte arena of the distinct account identifiers (length byte + UTF-8), so an entry takes about 12 bytes / load factor
+ * instead of the two Strings and the map node of a boxed map, and an account identifier some bytes instead of a String.
+ * The distinct accounts are found by an open addressing table of arena offsets. The arena is compacted when it is full and
+ * when the table is rebuilt, so the accounts of removed MSISDNs do not accumulate.
+ * <p>
+ * Writes are serialized, reads are optimistic and retried under the read lock if a write happened meanwhile.
+ */
+public class MsisdnIndex {
+
+    public static final int MAX_DIGITS = 15;
+
+    private static final int DIGITS_SHIFT = 50; // 10^15 < 2^50
+    private static final long EMPTY = 0L; // every packed key has at least one digit
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int INITIAL_ARENA_SIZE = 1 << 12;
+    private static final int MAX_ACCOUNT_LENGTH = 0xff;
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int threshold;
+
+    /** account identifiers: length byte followed by the UTF-8 bytes */
+    private byte[] arena;
+    private int arenaSize;
+    /** write side only: arena offset + 1 of the distinct accounts, 0 for an empty slot */
+    private int[] accountSlots;
+    private int accountCount;
+
+    public MsisdnIndex() {
+        init(INITIAL_CAPACITY);
+        initArena(INITIAL_ARENA_SIZE, INITIAL_CAPACITY);
+    }
+
+    /** @return true if the value can be held by the index: 1 to 15 decimal digits */
+    public static boolean isPackable(String msisdn) {
+        return pack(msisdn) != EMPTY;
+    }
+
+    private static long pack(String msisdn) {
+        int length = msisdn == null ? 0 : msisdn.length();
+        if (length == 0 || length > MAX_DIGITS)
+            return EMPTY;
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = msisdn.charAt(i);
+            if (c < '0' || c > '9')
+                return EMPTY;
+            value = value * 10 + (c - '0');
+        }
+        return ((long) length << DIGITS_SHIFT) | value;
+    }
+
+    /** @return account identifier of the MSISDN or null */
+    public String get(String msisdn) {
+        long key = pack(msisdn);
+        if (key == EMPTY)
+            return null;
+
+        long stamp = lock.tryOptimisticRead();
+        String account = find(key);
+        if (lock.validate(stamp))
+            return account;
+
+        stamp = lock.readLock();
+        try {
+            return find(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** @return false if the MSISDN can not be held by the index */
+    public boolean put(@NotNull String msisdn, @NotNull String accountId) {
+        return put(msisdn, accountId, true);
+    }
+
+    /** @return false if the MSISDN can not be held by the index */
+    public boolean putIfAbsent(@NotNull String msisdn, @NotNull String accountId) {
+        return put(msisdn, accountId, false);
+    }
+
+    private boolean put(@NotNull String msisdn, @NotNull String accountId, boolean replace) {
+        long key = pack(msisdn);
+        if (key == EMPTY)
+            return false;
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(key, keys.length - 1);
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    if (replace) {
+                        int accountOffset = accountOffset(encode(accountId));
+                        values[slot] = accountOffset;
+                    }
+                    return true;
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            // the account first: a compaction of the arena rewrites the values of all the used slots
+            int accountOffset = accountOffset(encode(accountId));
+            values[slot] = accountOffset;
+            keys[slot] = key;
+            if (++size > threshold)
+                resize(keys.length << 1);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** @return true if the MSISDN was held by the index */
+    public boolean remove(String msisdn) {
+        long key = pack(msisdn);
+        if (key == EMPTY)
+            return false;
+
+        long stamp = lock.writeLock();
+        try {
+            int mask = keys.length - 1;
+            for (int slot = slot(key, mask); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    delete(slot);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** @return the number of MSISDNs removed for the account */
+    public int removeAccount(@NotNull String accountId) {
+        long stamp = lock.writeLock();
+        try {
+            int accountOffset = findAccount(encode(accountId));
+            if (accountOffset < 0)
+                return 0;
+            int removed = 0;
+            int slot = 0;
+            while (slot < keys.length) {
+                // deletion shifts the following entries back into this slot, so check it again
+                if (keys[slot] != EMPTY && values[slot] == accountOffset) {
+                    delete(slot);
+                    removed++;
+                } else
+                    slot++;
+            }
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            init(INITIAL_CAPACITY);
+            initArena(INITIAL_ARENA_SIZE, INITIAL_CAPACITY);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** @return approximate heap usage of the tables and of the account arena in bytes */
+    public long getTableSize() {
+        return keys.length * (long) (Long.BYTES + Integer.BYTES) + arena.length + accountSlots.length * (long) Integer.BYTES;
+    }
+
+    /** Lookup safe to run concurrently with a write, the result is discarded if the optimistic read is invalid */
+    private String find(long key) {
+        long[] keys = this.keys;
+        int[] values = this.values;
+        byte[] arena = this.arena;
+        if (keys.length != values.length)
+            return null;
+
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (int probes = 0; probes < keys.length; probes++) {
+            long current = keys[slot];
+            if (current == EMPTY)
+                return null;
+            if (current == key) {
+                int offset = values[slot];
+                if (offset < 0 || offset >= arena.length)
+                    return null;
+                int length = arena[offset] & 0xff;
+                return offset + 1 + length <= arena.length ? new String(arena, offset + 1, length, StandardCharsets.UTF_8) : null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /** Backward shift deletion: moves the following entries of the probe sequence back, so no tombstone is needed */
+    private void delete(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long key = keys[next];
+            if (key == EMPTY)
+                break;
+            int home = slot(key, mask);
+            // the entry can fill the hole only if its home slot is not cyclically in (hole, next]
+            boolean between = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (between)
+                continue;
+            keys[hole] = key;
+            values[hole] = values[next];
+            hole = next;
+        }
+        keys[hole] = EMPTY;
+        values[hole] = 0;
+        size--;
+    }
+
+    private static byte[] encode(@NotNull String accountId) {
+        byte[] bytes = accountId.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_ACCOUNT_LENGTH)
+            throw new IllegalArgumentException("Account identifier " + accountId + " is longer than " + MAX_ACCOUNT_LENGTH + " bytes");
+        return bytes;
+    }
+
+    /** @return arena offset of the account or -1 */
+    private int findAccount(@NotNull byte[] account) {
+        int mask = accountSlots.length - 1;
+        for (int slot = hash(account) & mask; accountSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int offset = accountSlots[slot] - 1;
+            if (accountEquals(offset, account))
+                return offset;
+        }
+        return -1;
+    }
+
+    /** @return arena offset of the account, appended if it is not in the arena yet */
+    private int accountOffset(@NotNull byte[] account) {
+        int offset = findAccount(account);
+        if (offset >= 0)
+            return offset;
+
+        if (arenaSize + 1 + account.length > arena.length)
+            compact(1 + account.length);
+        offset = arenaSize;
+        arena[arenaSize++] = (byte) account.length;
+        System.arraycopy(account, 0, arena, arenaSize, account.length);
+        arenaSize += account.length;
+        addAccountSlot(offset, account);
+        return offset;
+    }
+
+    private void addAccountSlot(int offset, @NotNull byte[] account) {
+        if (++accountCount > accountSlots.length * LOAD_FACTOR) {
+            int[] oldSlots = accountSlots;
+            accountSlots = new int[oldSlots.length << 1];
+            for (int oldSlot : oldSlots) {
+                if (oldSlot != 0)
+                    insertAccountSlot(oldSlot, hash(arena, oldSlot - 1));
+            }
+        }
+        insertAccountSlot(offset + 1, hash(account));
+    }
+
+    private void insertAccountSlot(int value, int hash) {
+        int mask = accountSlots.length - 1;
+        int slot = hash & mask;
+        while (accountSlots[slot] != 0)
+            slot = (slot + 1) & mask;
+        accountSlots[slot] = value;
+    }
+
+    /**
+     * Copies the accounts still referenced by the table into a new arena, at least twice as large as the live accounts plus the
+     * space needed, and rewrites the values of the table with the new offsets.
+     */
+    private void compact(int needed) {
+        byte[] oldArena = arena;
+        int[] oldSlots = accountSlots;
+        // new offset of the account of each old account slot: -1 not referenced, -2 referenced but not copied yet
+        int[] newOffsets = new int[oldSlots.length];
+        Arrays.fill(newOffsets, -1);
+        int liveSize = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (keys[i] == EMPTY)
+                continue;
+            int slot = accountSlotOf(oldSlots, oldArena, values[i]);
+            if (newOffsets[slot] == -1) {
+                newOffsets[slot] = -2;
+                liveSize += 1 + (oldArena[values[i]] & 0xff);
+            }
+        }
+        byte[] newArena = new byte[Math.max(INITIAL_ARENA_SIZE, (liveSize + needed) << 1)];
+        int newSize = 0;
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (keys[i] == EMPTY)
+                continue;
+            int oldOffset = values[i];
+            int slot = accountSlotOf(oldSlots, oldArena, oldOffset);
+            if (newOffsets[slot] < 0) {
+                int length = 1 + (oldArena[oldOffset] & 0xff);
+                System.arraycopy(oldArena, oldOffset, newArena, newSize, length);
+                newOffsets[slot] = newSize;
+                newSize += length;
+                count++;
+            }
+            values[i] = newOffsets[slot];
+        }
+        arena = newArena;
+        arenaSize = newSize;
+        accountSlots = new int[oldSlots.length];
+        accountCount = count;
+        for (int slot = 0; slot < oldSlots.length; slot++) {
+            if (newOffsets[slot] >= 0)
+                insertAccountSlot(newOffsets[slot] + 1, hash(newArena, newOffsets[slot]));
+        }
+    }
+
+    /** @return slot of the account slot table which holds the arena offset */
+    private static int accountSlotOf(@NotNull int[] slots, @NotNull byte[] arena, int offset) {
+        int mask = slots.length - 1;
+        int slot = hash(arena, offset) & mask;
+        while (slots[slot] != offset + 1)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private boolean accountEquals(int offset, @NotNull byte[] account) {
+        if ((arena[offset] & 0xff) != account.length)
+            return false;
+        for (int i = 0; i < account.length; i++) {
+            if (arena[offset + 1 + i] != account[i])
+                return false;
+        }
+        return true;
+    }
+
+    /** FNV-1a of the account bytes */
+    private static int hash(@NotNull byte[] account) {
+        return hash(account, 0, account.length);
+    }
+
+    private static int hash(@NotNull byte[] arena, int offset) {
+        return hash(arena, offset + 1, arena[offset] & 0xff);
+    }
+
+    private static int hash(@NotNull byte[] bytes, int from, int length) {
+        int hash = 0x811c9dc5;
+        for (int i = from; i < from + length; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        long[] newKeys = new long[capacity];
+        int[] newValues = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == EMPTY)
+                continue;
+            int slot = slot(key, mask);
+            while (newKeys[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+            newKeys[slot] = key;
+            newValues[slot] = oldValues[i];
+        }
+        keys = newKeys;
+        values = newValues;
+        threshold = (int) (capacity * LOAD_FACTOR);
+        compact(0);
+    }
+
+    private void init(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        size = 0;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void initArena(int arenaCapacity, int accountCapacity) {
+        arena = new byte[arenaCapacity];
+        arenaSize = 0;
+        accountSlots = new int[accountCapacity];
+        accountCount = 0;
+    }
+
+    private static int slot(long key, int mask) {
+        // murmur3 finalizer, the packed keys are sequential numbers
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb33fa85a63d7L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
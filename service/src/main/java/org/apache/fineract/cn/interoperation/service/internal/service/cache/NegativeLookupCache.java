@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Short living cache of the lookups which have not found anything: party identifiers and ledger accounts unknown to this service.
+ * Repeated probes of the same unknown identifier are answered without hitting the database or the ledger.
+ */
+@Component
+public class NegativeLookupCache {
+
+    public static final String CACHE_NEGATIVE_LOOKUP = "negativeLookup";
+
+    private static final String KIND_IDENTIFIER = "identifier";
+    private static final String KIND_ACCOUNT = "account";
+
+    private final TenantCache<String, Boolean> cache;
+
+    @Autowired
+    public NegativeLookupCache(InteropCacheManager cacheManager) {
+        this.cache = cacheManager.createCache(CACHE_NEGATIVE_LOOKUP, 100000, 60);
+    }
+
+    public boolean isMissingIdentifier(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        return cache.getIfPresent(identifierKey(idType, idValue, subIdOrType)) != null;
+    }
+
+    public void markMissingIdentifier(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        cache.put(identifierKey(idType, idValue, subIdOrType), Boolean.TRUE);
+    }
+
+    public void evictIdentifier(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        cache.invalidate(identifierKey(idType, idValue, subIdOrType));
+    }
+
+    /** Evicts all the missing identifiers of the tenant, when an identifier was registered but the key is not known */
+    public void evictIdentifiers() {
+        String prefix = KIND_IDENTIFIER + ':';
+        cache.invalidateIf((key, value) -> key.startsWith(prefix));
+    }
+
+    public boolean isMissingAccount(@NotNull String accountNumber) {
+        return cache.getIfPresent(accountKey(accountNumber)) != null;
+    }
+
+    public void markMissingAccount(@NotNull String accountNumber) {
+        cache.put(accountKey(accountNumber), Boolean.TRUE);
+    }
+
+    public void evictAccount(@NotNull String accountNumber) {
+        cache.invalidate(accountKey(accountNumber));
+    }
+
+    public void evictAll() {
+        cache.invalidateTenant();
+    }
+
+    private static String identifierKey(@NotNull InteropIdentifierType idType, @NotNull String idValue, String subIdOrType) {
+        return KIND_IDENTIFIER + ':' + idType + '/' + InteropIdentifierEntity.normalizeKey(idValue)
+                + (subIdOrType == null ? "" : ('/' + InteropIdentifierEntity.normalizeKey(subIdOrType)));
+    }
+
+    private static String accountKey(@NotNull String accountNumber) {
+        return KIND_ACCOUNT + ':' + accountNumber;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+
+import javax.validation.constraints.NotNull;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Bounded, expiring cache where every entry belongs to the tenant of the current context.
+ * Entries of one tenant are never visible to the other tenants.
+ * <p>
+ * Optionally the keys are indexed by a group of their value, e.g. the customer of an account, so the entries of a group can be
+ * invalidated without a scan of the cache. The index follows the removals of the cache, evicted and expired entries included.
+ */
+public class TenantCache<K, V> {
+
+    private final String name;
+    private final long maximumSize;
+    private final long expireAfterWrite;
+
+    private final Cache<TenantKey<K>, V> cache;
+    /** value -> group of the entry, null if the cache is not indexed */
+    private final Function<? super V, ?> grouping;
+    /** tenant and group -> keys of the group */
+    private final ConcurrentMap<TenantKey<Object>, Set<K>> groups = new ConcurrentHashMap<>();
+
+    public TenantCache(@NotNull String name, long maximumSize, long expireAfterWrite) {
+        this(name, maximumSize, expireAfterWrite, null);
+    }
+
+    /** @param grouping group of a value to index the keys by, the value may have no group (null) */
+    public TenantCache(@NotNull String name, long maximumSize, long expireAfterWrite, Function<? super V, ?> grouping) {
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.expireAfterWrite = expireAfterWrite;
+        this.grouping = grouping;
+
+        CacheBuilder<TenantKey<K>, V> builder = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .removalListener(this::removed);
+        if (expireAfterWrite > 0)
+            builder.expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS);
+        this.cache = builder.build();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /** @return time to live of the entries in seconds, 0 if entries do not expire */
+    public long getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    /** @return the cached value of the current tenant, the value is loaded by the loader if missing. Null result is not cached. */
+    public V get(@NotNull K key, @NotNull Callable<? extends V> loader) {
+        TenantKey<K> tenantKey = tenantKey(key);
+        try {
+            if (grouping == null)
+                return cache.get(tenantKey, loader);
+
+            AtomicBoolean loaded = new AtomicBoolean();
+            V value = cache.get(tenantKey, () -> {
+                loaded.set(true);
+                return loader.call();
+            });
+            if (loaded.get())
+                index(tenantKey, value);
+            return value;
+        } catch (CacheLoader.InvalidCacheLoadException ex) {
+            return null; // loader returned null
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException("Can not load " + name + " " + key, cause);
+        }
+    }
+
+    public V getIfPresent(@NotNull K key) {
+        return cache.getIfPresent(tenantKey(key));
+    }
+
+    public void put(@NotNull K key, @NotNull V value) {
+        TenantKey<K> tenantKey = tenantKey(key);
+        cache.put(tenantKey, value);
+        if (grouping != null)
+            index(tenantKey, value);
+    }
+
+    public void invalidate(@NotNull K key) {
+        cache.invalidate(tenantKey(key));
+    }
+
+    /** Invalidates the entries of the current tenant whose value belongs to the group, the cache must be indexed */
+    public void invalidateGroup(@NotNull Object group) {
+        if (grouping == null)
+            throw new IllegalStateException("Cache " + name + " is not indexed");
+        Set<K> keys = groups.remove(new TenantKey<>(getTenant(), group));
+        if (keys != null)
+            keys.forEach(this::invalidate);
+    }
+
+    /** Invalidates the entries of the current tenant matching the filter */
+    public void invalidateIf(@NotNull BiPredicate<K, V> filter) {
+        String tenant = getTenant();
+        cache.asMap().entrySet().removeIf(entry -> entry.getKey().tenant.equals(tenant) && filter.test(entry.getKey().key, entry.getValue()));
+    }
+
+    /** Invalidates all the entries of the current tenant */
+    public void invalidateTenant() {
+        invalidateIf((key, value) -> true);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        groups.clear();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /** @return hit, miss, load and eviction counters of the cache */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private void index(@NotNull TenantKey<K> tenantKey, @NotNull V value) {
+        Object group = grouping.apply(value);
+        if (group == null)
+            return;
+        TenantKey<Object> groupKey = new TenantKey<>(tenantKey.tenant, group);
+        groups.computeIfAbsent(groupKey, k -> ConcurrentHashMap.newKeySet()).add(tenantKey.key);
+        // removed before it was indexed: the removal listener did not find the key
+        if (cache.asMap().get(tenantKey) != value)
+            unindex(groupKey, tenantKey.key);
+    }
+
+    private void removed(@NotNull RemovalNotification<TenantKey<K>, V> notification) {
+        TenantKey<K> tenantKey = notification.getKey();
+        V value = notification.getValue();
+        if (grouping == null || tenantKey == null || value == null)
+            return;
+        Object group = grouping.apply(value);
+        if (group == null)
+            return;
+        if (notification.getCause() == RemovalCause.REPLACED) {
+            V current = cache.asMap().get(tenantKey);
+            if (current != null && group.equals(grouping.apply(current)))
+                return; // still in the group
+        }
+        unindex(new TenantKey<>(tenantKey.tenant, group), tenantKey.key);
+    }
+
+    private void unindex(@NotNull TenantKey<Object> groupKey, @NotNull K key) {
+        groups.computeIfPresent(groupKey, (k, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private TenantKey<K> tenantKey(@NotNull K key) {
+        return new TenantKey<>(getTenant(), key);
+    }
+
+    private static String getTenant() {
+        return TenantContextHolder.checkedGetIdentifier();
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + stats();
+    }
+
+    private static final class TenantKey<K> {
+        @NotNull
+        private final String tenant;
+        @NotNull
+        private final K key;
+
+        private TenantKey(@NotNull String tenant, @NotNull K key) {
+            this.tenant = tenant;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            TenantKey<?> that = (TenantKey<?>) o;
+
+            return tenant.equals(that.tenant) && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tenant, key);
+        }
+    }
+}
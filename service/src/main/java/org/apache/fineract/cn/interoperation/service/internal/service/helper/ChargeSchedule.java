@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.helper;
+
+import org.apache.fineract.cn.deposit.api.v1.definition.domain.Action;
+import org.apache.fineract.cn.deposit.api.v1.definition.domain.Charge;
+import org.apache.fineract.cn.deposit.api.v1.definition.domain.ProductDefinition;
+import org.apache.fineract.cn.interoperation.api.v1.domain.TransactionType;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Immutable snapshot of the charges of every product definition of a tenant, grouped by the transaction type of the charge action.
+ */
+public class ChargeSchedule {
+
+    /** action identifier -> transaction type code */
+    private final Map<String, String> actionTypes;
+    /** product identifier -> transaction type code -> charges */
+    private final Map<String, Map<String, List<Charge>>> charges;
+
+    private final long expiresAt;
+    private final AtomicBoolean invalid = new AtomicBoolean(false);
+    private final AtomicBoolean refreshRequested = new AtomicBoolean(false);
+
+    private ChargeSchedule(@NotNull Map<String, String> actionTypes, @NotNull Map<String, Map<String, List<Charge>>> charges, long expiresAt) {
+        this.actionTypes = actionTypes;
+        this.charges = charges;
+        this.expiresAt = expiresAt;
+    }
+
+    @NotNull
+    public static ChargeSchedule build(@NotNull List<Action> actions, @NotNull List<ProductDefinition> productDefinitions, long timeToLive) {
+        Map<String, String> actionTypes = new HashMap<>(actions.size());
+        for (Action action : actions) {
+            actionTypes.put(action.getIdentifier(), action.getTransactionType());
+        }
+
+        Map<String, Map<String, List<Charge>>> charges = new HashMap<>(productDefinitions.size());
+        for (ProductDefinition productDefinition : productDefinitions) {
+            charges.put(productDefinition.getIdentifier(), groupCharges(productDefinition, actionTypes));
+        }
+        return new ChargeSchedule(actionTypes, charges, System.currentTimeMillis() + timeToLive * 1000);
+    }
+
+    /** @return charges of the product for the transaction type or null if the product was not known when the schedule was built */
+    public List<Charge> getCharges(@NotNull String productIdentifier, @NotNull TransactionType transactionType) {
+        Map<String, List<Charge>> productCharges = charges.get(productIdentifier);
+        if (productCharges == null)
+            return null;
+
+        List<Charge> result = productCharges.get(transactionType.getCode());
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /** @return charges of a product definition which is not part of this schedule, using the actions of this schedule */
+    @NotNull
+    public List<Charge> resolveCharges(@NotNull ProductDefinition productDefinition, @NotNull TransactionType transactionType) {
+        List<Charge> result = groupCharges(productDefinition, actionTypes).get(transactionType.getCode());
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    public boolean isStale() {
+        return invalid.get() || System.currentTimeMillis() > expiresAt;
+    }
+
+    public void invalidate() {
+        invalid.set(true);
+    }
+
+    /** @return true only for the first caller, so the rebuild of a stale schedule is requested only once */
+    public boolean requestRefresh() {
+        return refreshRequested.compareAndSet(false, true);
+    }
+
+    /** Refresh has failed, next caller can request it again */
+    public void cancelRefresh() {
+        refreshRequested.set(false);
+    }
+
+    private static Map<String, List<Charge>> groupCharges(@NotNull ProductDefinition productDefinition, @NotNull Map<String, String> actionTypes) {
+        List<Charge> productCharges = productDefinition.getCharges();
+        if (productCharges == null || productCharges.isEmpty())
+            return Collections.emptyMap();
+
+        Map<String, List<Charge>> result = new HashMap<>();
+        for (Charge charge : productCharges) {
+            String transactionType = actionTypes.get(charge.getActionIdentifier());
+            if (transactionType != null)
+                result.computeIfAbsent(transactionType, type -> new ArrayList<>(1)).add(charge);
+        }
+        result.replaceAll((type, typeCharges) -> Collections.unmodifiableList(typeCharges));
+        return result;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.helper;
+
+import org.apache.fineract.cn.deposit.api.v1.client.DepositAccountManager;
+import org.apache.fineract.cn.deposit.api.v1.definition.domain.Action;
+import org.apache.fineract.cn.deposit.api.v1.definition.domain.ProductDefinition;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link ChargeSchedule} of every tenant. The schedule is built with two remote calls (actions and product definitions)
+ * and is rebuilt in the background when it gets stale or invalidated, while the previous one is still served.
+ */
+@Component
+public class ChargeScheduleIndex {
+
+    private final Logger logger;
+    private final DepositAccountManager depositAccountManager;
+    private final long timeToLive;
+
+    private final Map<String, ChargeSchedule> schedules = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ChargeScheduleIndex(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                               DepositAccountManager depositAccountManager,
+                               @Value("${interoperation.chargeSchedule.expireAfterWrite:600}") long timeToLive) {
+        this.logger = logger;
+        this.depositAccountManager = depositAccountManager;
+        this.timeToLive = timeToLive;
+    }
+
+    /** @return the schedule of the current tenant, built synchronously on first use */
+    @NotNull
+    public ChargeSchedule getSchedule() {
+        ChargeSchedule schedule = schedules.get(TenantContextHolder.checkedGetIdentifier());
+        return schedule == null ? rebuild() : schedule;
+    }
+
+    @NotNull
+    public ChargeSchedule rebuild() {
+        String tenant = TenantContextHolder.checkedGetIdentifier();
+        List<Action> actions = depositAccountManager.fetchActions();
+        List<ProductDefinition> productDefinitions = depositAccountManager.fetchProductDefinitions();
+
+        ChargeSchedule schedule = ChargeSchedule.build(actions, productDefinitions, timeToLive);
+        schedules.put(tenant, schedule);
+        logger.debug("Charge schedule of tenant {} was rebuilt for {} products", tenant, productDefinitions.size());
+        return schedule;
+    }
+
+    @Async
+    public void rebuildAsync() {
+        try {
+            rebuild();
+        } catch (RuntimeException ex) {
+            logger.warn("Can not rebuild charge schedule, the previous one is used until the next attempt", ex);
+            ChargeSchedule schedule = schedules.get(TenantContextHolder.checkedGetIdentifier());
+            if (schedule != null)
+                schedule.cancelRefresh();
+        }
+    }
+
+    /** Marks the schedule of the current tenant outdated, it is rebuilt in the background on next use */
+    public void invalidate() {
+        ChargeSchedule schedule = schedules.get(TenantContextHolder.checkedGetIdentifier());
+        if (schedule != null)
+            schedule.invalidate();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.helper;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.apache.fineract.cn.deposit.api.v1.definition.domain.Charge;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact serialized form of the charges of a quote, stored on the QUOTE action and reused by the transfer of the same transaction.
+ * Only the properties needed to calculate and book the fee are kept, one [income account, proportional, amount] array per charge.
+ */
+public final class ChargeSnapshot {
+
+    private ChargeSnapshot() {
+    }
+
+    /** @return the serialized charges */
+    public static String serialize(@NotNull List<Charge> charges) {
+        JsonArray array = new JsonArray();
+        for (Charge charge : charges) {
+            JsonArray item = new JsonArray();
+            item.add(charge.getIncomeAccountIdentifier());
+            item.add(charge.getProportional());
+            item.add(charge.getAmount());
+            array.add(item);
+        }
+        return array.toString();
+    }
+
+    /** @return the charges of the snapshot in the original order, null if there is no snapshot */
+    public static List<Charge> deserialize(String snapshot) {
+        if (snapshot == null)
+            return null;
+
+        JsonArray array = new JsonParser().parse(snapshot).getAsJsonArray();
+        if (array.size() == 0)
+            return Collections.emptyList();
+
+        List<Charge> charges = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            JsonArray item = element.getAsJsonArray();
+            Charge charge = new Charge();
+            charge.setIncomeAccountIdentifier(item.get(0).isJsonNull() ? null : item.get(0).getAsString());
+            charge.setProportional(item.get(1).isJsonNull() ? null : item.get(1).getAsBoolean());
+            charge.setAmount(item.get(2).isJsonNull() ? null : item.get(2).getAsDouble());
+            charges.add(charge);
+        }
+        return charges;
+    }
+}
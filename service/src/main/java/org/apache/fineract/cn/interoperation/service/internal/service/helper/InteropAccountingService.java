@@ -20,6 +20,7 @@ package org.apache.fineract.cn.interoperation.service.internal.service.helper;
 
 import com.google.common.collect.Lists;
 import org.apache.fineract.cn.accounting.api.v1.client.AccountNotFoundException;
+import org.apache.fineract.cn.accounting.api.v1.client.JournalEntryAlreadyExistsException;
 import org.apache.fineract.cn.accounting.api.v1.client.LedgerManager;
 import org.apache.fineract.cn.accounting.api.v1.client.LedgerNotFoundException;
 import org.apache.fineract.cn.accounting.api.v1.domain.Account;
@@ -28,29 +29,58 @@ import org.apache.fineract.cn.accounting.api.v1.domain.AccountPage;
 import org.apache.fineract.cn.accounting.api.v1.domain.JournalEntry;
 import org.apache.fineract.cn.accounting.api.v1.domain.Ledger;
 import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropCacheManager;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.LookupContext;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.NegativeLookupCache;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.TenantCache;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.function.Function;
 
 @Service
 public class InteropAccountingService {
 
+    public static final String LOOKUP_ACCOUNT = "account";
+    public static final String LOOKUP_JOURNAL_ENTRY = "journalEntry";
+
+    public static final String CACHE_ALTERNATIVE_ACCOUNT = "alternativeAccount";
+    public static final String CACHE_LEDGER = "ledger";
+    public static final String CACHE_ACCOUNT = "account";
+
+    private static final int ALTERNATIVE_ACCOUNT_PAGE_SIZE = 500;
+
     private Logger logger;
     private LedgerManager ledgerManager;
+    private NegativeLookupCache negativeLookupCache;
+
+    /** alternative account number -> ledger account identifier */
+    private final TenantCache<String, String> alternativeAccountCache;
+    private final TenantCache<String, Ledger> ledgerCache;
+    /** account number -> ledger account, short living, only for informational lookups */
+    private final TenantCache<String, Account> accountCache;
 
     @Autowired
     public InteropAccountingService(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
-                                    LedgerManager ledgerManager) {
+                                    LedgerManager ledgerManager,
+                                    NegativeLookupCache negativeLookupCache,
+                                    InteropCacheManager cacheManager) {
         super();
         this.logger = logger;
         this.ledgerManager = ledgerManager;
+        this.negativeLookupCache = negativeLookupCache;
+        this.alternativeAccountCache = cacheManager.createCache(CACHE_ALTERNATIVE_ACCOUNT, 1000000, 86400, Function.identity());
+        this.ledgerCache = cacheManager.createCache(CACHE_LEDGER, 1000, 3600);
+        this.accountCache = cacheManager.createCache(CACHE_ACCOUNT, 100000, 30, Account::getIdentifier);
     }
 
     public void createAccount(String equityLedger,
@@ -60,44 +90,143 @@ public class InteropAccountingService {
                               String alternativeAccountNumber,
                               Double balance) {
         try {
-            Ledger ledger = ledgerManager.findLedger(equityLedger);
             Account account = new Account();
             account.setIdentifier(accountNumber);
-            account.setType(ledger.getType());
             account.setLedger(equityLedger);
             account.setName(productName);
             account.setHolders(new HashSet<>(Lists.newArrayList(customer)));
             account.setBalance(balance != null ? balance : 0.00D);
             account.setAlternativeAccountNumber(alternativeAccountNumber);
 
-            ledgerManager.createAccount(account);
+            provisionAccount(account);
         } catch (LedgerNotFoundException lnfex) {
             throw ServiceException.notFound("Ledger {0} not found.", equityLedger);
         }
     }
 
+    /**
+     * Creates the accounts one by one, the ledger of the accounts is resolved only once per ledger.
+     * @return identifiers of the accounts which could not be created
+     */
+    @NotNull
+    public List<String> createAccounts(@NotNull List<Account> accounts) {
+        List<String> failed = new ArrayList<>();
+        for (Account account : accounts) {
+            try {
+                provisionAccount(account);
+            } catch (LedgerNotFoundException lnfex) {
+                logger.warn("Ledger {} not found for account {}", account.getLedger(), account.getIdentifier());
+                failed.add(account.getIdentifier());
+            } catch (RuntimeException ex) {
+                logger.warn("Can not create account " + account.getIdentifier(), ex);
+                failed.add(account.getIdentifier());
+            }
+        }
+        logger.info("{} accounts were created, {} failed", accounts.size() - failed.size(), failed.size());
+        return failed;
+    }
+
+    private void provisionAccount(@NotNull Account account) {
+        Ledger ledger = findLedger(account.getLedger());
+        account.setType(ledger.getType());
+
+        ledgerManager.createAccount(account);
+        negativeLookupCache.evictAccount(account.getIdentifier());
+        String alternativeAccountNumber = account.getAlternativeAccountNumber();
+        if (alternativeAccountNumber != null)
+            negativeLookupCache.evictAccount(alternativeAccountNumber);
+    }
+
+    public Ledger findLedger(@NotNull String identifier) {
+        return ledgerCache.get(identifier, () -> ledgerManager.findLedger(identifier));
+    }
+
+    public void evictLedger(@NotNull String identifier) {
+        ledgerCache.invalidate(identifier);
+    }
+
     public List<Account> fetchAccounts(boolean includeClosed, String term, String type, boolean includeCustomerAccounts,
                                      Integer pageIndex, Integer size, String sortColumn, String sortDirection) {
         return ledgerManager.fetchAccounts(includeClosed, term, type, includeCustomerAccounts, pageIndex, size, sortColumn, sortDirection).getAccounts();
     }
 
     public Account findAccount(final String accountNumber) {
+        return LookupContext.lookup(LOOKUP_ACCOUNT, accountNumber, () -> loadAccount(accountNumber));
+    }
+
+    /**
+     * @return the account from a short living cache. State and balance may be outdated, must not be used to validate a transfer.
+     */
+    public Account findCachedAccount(final String accountNumber) {
+        return accountCache.get(accountNumber, () -> findAccount(accountNumber));
+    }
+
+    private Account loadAccount(final String accountNumber) {
+        if (negativeLookupCache.isMissingAccount(accountNumber))
+            throw ServiceException.notFound("Account {0} not found.", accountNumber);
+
+        String identifier = alternativeAccountCache.getIfPresent(accountNumber);
+        if (identifier != null) {
+            try {
+                Account account = this.ledgerManager.findAccount(identifier);
+                if (accountNumber.equals(account.getAlternativeAccountNumber()))
+                    return account;
+            } catch (final AccountNotFoundException anfex) {
+                // indexed account was removed
+            }
+            alternativeAccountCache.invalidate(accountNumber);
+        }
         try {
             return this.ledgerManager.findAccount(accountNumber);
         } catch (final AccountNotFoundException anfex) {
             final AccountPage accountPage = this.ledgerManager.fetchAccounts(true, accountNumber, null, true,
                     0, 10, null, null);
 
-            return accountPage.getAccounts()
+            Account account = accountPage.getAccounts()
                     .stream()
-                    .filter(account -> account.getAlternativeAccountNumber().equals(accountNumber))
+                    .filter(a -> accountNumber.equals(a.getAlternativeAccountNumber()))
                     .findFirst()
-                    .orElseThrow(() -> ServiceException.notFound("Account {0} not found.", accountNumber));
+                    .orElseThrow(() -> {
+                        negativeLookupCache.markMissingAccount(accountNumber);
+                        return ServiceException.notFound("Account {0} not found.", accountNumber);
+                    });
+            alternativeAccountCache.put(accountNumber, account.getIdentifier());
+            return account;
         }
     }
 
+    /** Indexes the alternative account numbers of all the ledger accounts of the current tenant */
+    @Async
+    public void syncAlternativeAccountNumbers() {
+        int count = 0;
+        int pageIndex = 0;
+        AccountPage accountPage;
+        do {
+            accountPage = this.ledgerManager.fetchAccounts(true, null, null, true,
+                    pageIndex++, ALTERNATIVE_ACCOUNT_PAGE_SIZE, null, null);
+            for (Account account : accountPage.getAccounts()) {
+                String alternativeAccountNumber = account.getAlternativeAccountNumber();
+                if (alternativeAccountNumber != null) {
+                    alternativeAccountCache.put(alternativeAccountNumber, account.getIdentifier());
+                    count++;
+                }
+            }
+        } while (accountPage.getTotalPages() != null && pageIndex < accountPage.getTotalPages());
+
+        logger.info("{} alternative account numbers were indexed", count);
+    }
+
+    /** Evicts everything held about the ledger account */
+    public void evictAccount(@NotNull String accountIdentifier) {
+        alternativeAccountCache.invalidateGroup(accountIdentifier);
+        accountCache.invalidate(accountIdentifier);
+        accountCache.invalidateGroup(accountIdentifier);
+    }
+
     public void modifyAccount(Account account) {
         ledgerManager.modifyAccount(account.getIdentifier(), account);
+        LookupContext.evict(LOOKUP_ACCOUNT, account.getIdentifier());
+        accountCache.invalidate(account.getIdentifier());
     }
 
     public List<AccountEntry> fetchAccountEntries(String identifier, String dateRange, String direction) {
@@ -111,10 +240,37 @@ public class InteropAccountingService {
     }
 
     public JournalEntry findJournalEntry(@NotNull String transactionIdentifier) {
-        return ledgerManager.findJournalEntry(transactionIdentifier);
+        return LookupContext.lookup(LOOKUP_JOURNAL_ENTRY, transactionIdentifier, () -> ledgerManager.findJournalEntry(transactionIdentifier));
     }
 
     public void createJournalEntry(@NotNull JournalEntry journalEntry) {
         ledgerManager.createJournalEntry(journalEntry);
     }
+
+    /** Cross-checks the debited total of the journal entry against the locally stored amount, a mismatch is only logged */
+    @Async
+    public void verifyJournalEntry(@NotNull String transactionIdentifier, @NotNull BigDecimal expectedAmount) {
+        try {
+            JournalEntry journalEntry = ledgerManager.findJournalEntry(transactionIdentifier);
+            if (journalEntry == null) {
+                logger.error("Journal entry {} was not found on the ledger, expected amount {}", transactionIdentifier, expectedAmount);
+                return;
+            }
+            BigDecimal amount = journalEntry.getDebtors().stream().map(d -> new BigDecimal(d.getAmount())).reduce(BigDecimal.ZERO, BigDecimal::add);
+            if (amount.compareTo(expectedAmount) != 0)
+                logger.error("Journal entry {} amount {} differs from the expected amount {}", transactionIdentifier, amount, expectedAmount);
+        } catch (RuntimeException ex) {
+            logger.warn("Can not verify journal entry " + transactionIdentifier, ex);
+        }
+    }
+
+    /** @return false if a journal entry with the same transaction identifier is already on the ledger */
+    public boolean createJournalEntryIfAbsent(@NotNull JournalEntry journalEntry) {
+        try {
+            ledgerManager.createJournalEntry(journalEntry);
+            return true;
+        } catch (final JournalEntryAlreadyExistsException jeaeex) {
+            return false;
+        }
+    }
 }
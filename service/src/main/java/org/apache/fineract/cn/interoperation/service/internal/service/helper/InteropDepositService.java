@@ -27,6 +27,9 @@ import org.apache.fineract.cn.deposit.api.v1.instance.domain.AvailableTransactio
 import org.apache.fineract.cn.deposit.api.v1.instance.domain.ProductInstance;
 import org.apache.fineract.cn.interoperation.api.v1.domain.TransactionType;
 import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropCacheManager;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.LookupContext;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.TenantCache;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -35,20 +38,31 @@ import org.springframework.stereotype.Service;
 import javax.validation.constraints.NotNull;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 public class InteropDepositService {
 
+    public static final String CACHE_PRODUCT_DEFINITION = "productDefinition";
+    public static final String CACHE_PRODUCT_INSTANCE = "productInstance";
+
     private Logger logger;
     private DepositAccountManager depositAccountManager;
 
+    private final ChargeScheduleIndex chargeScheduleIndex;
+    private final TenantCache<String, ProductDefinition> productDefinitionCache;
+    private final TenantCache<String, ProductInstance> productInstanceCache;
+
     @Autowired
     public InteropDepositService(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
-                                 DepositAccountManager depositAccountManager) {
+                                 DepositAccountManager depositAccountManager,
+                                 ChargeScheduleIndex chargeScheduleIndex,
+                                 InteropCacheManager cacheManager) {
         super();
         this.logger = logger;
         this.depositAccountManager = depositAccountManager;
+        this.chargeScheduleIndex = chargeScheduleIndex;
+        this.productDefinitionCache = cacheManager.createCache(CACHE_PRODUCT_DEFINITION, 1000, 3600);
+        this.productInstanceCache = cacheManager.createCache(CACHE_PRODUCT_INSTANCE, 500000, 300, ProductInstance::getCustomerIdentifier);
     }
 
     public List<Charge> getWithdrawCharges(String accountIdentifier) {
@@ -60,25 +74,26 @@ public class InteropDepositService {
     }
 
     public List<Charge> getCharges(String accountIdentifier, TransactionType transactionType) {
-        List<Action> actions = depositAccountManager.fetchActions();
+        ProductInstance productInstance = findProductInstance(accountIdentifier);
+        String productIdentifier = productInstance.getProductIdentifier();
 
-        List<String> actionIds = actions
-                .stream()
-                .filter(action -> action.getTransactionType().equals(transactionType.getCode()))
-                .map(Action::getIdentifier)
-                .collect(Collectors.toList());
+        ChargeSchedule schedule = chargeScheduleIndex.getSchedule();
+        List<Charge> charges = schedule.getCharges(productIdentifier, transactionType);
+        if ((charges == null || schedule.isStale()) && schedule.requestRefresh())
+            chargeScheduleIndex.rebuildAsync();
 
-        ProductInstance productInstance = depositAccountManager.findProductInstance(accountIdentifier);
-        ProductDefinition productDefinition = depositAccountManager.findProductDefinition(productInstance.getProductIdentifier());
-
-        return productDefinition.getCharges()
-                .stream()
-                .filter(charge -> actionIds.contains(charge.getActionIdentifier()))
-                .collect(Collectors.toList());
+        return charges == null
+                ? schedule.resolveCharges(findProductDefinition(productIdentifier), transactionType) // product is newer than the schedule
+                : charges;
     }
 
     public void createAction(@NotNull Action action) {
         depositAccountManager.create(action);
+        evictActions();
+    }
+
+    public void evictActions() {
+        chargeScheduleIndex.invalidate();
     }
 
     public List<Action> fetchActions() {
@@ -87,6 +102,7 @@ public class InteropDepositService {
 
     public void createProductDefinition(@NotNull ProductDefinition productDefinition) {
         depositAccountManager.create(productDefinition);
+        evictProductDefinition(productDefinition.getIdentifier());
     }
 
     public List<ProductDefinition> fetchProductDefinitions() {
@@ -94,7 +110,18 @@ public class InteropDepositService {
     }
 
     public ProductDefinition findProductDefinition(@NotNull String identifier) {
-        return depositAccountManager.findProductDefinition(identifier);
+        return LookupContext.lookup(CACHE_PRODUCT_DEFINITION, identifier,
+                () -> productDefinitionCache.get(identifier, () -> depositAccountManager.findProductDefinition(identifier)));
+    }
+
+    public void evictProductDefinition(@NotNull String identifier) {
+        productDefinitionCache.invalidate(identifier);
+        chargeScheduleIndex.invalidate();
+    }
+
+    public void evictProductDefinitions() {
+        productDefinitionCache.invalidateTenant();
+        chargeScheduleIndex.invalidate();
     }
 
     public List<ProductInstance> findProductInstances(@NotNull String identifier) {
@@ -103,6 +130,9 @@ public class InteropDepositService {
 
     public void createProductInstance(@NotNull ProductInstance productInstance) {
         depositAccountManager.create(productInstance);
+        String accountIdentifier = productInstance.getAccountIdentifier();
+        if (accountIdentifier != null)
+            evictProductInstance(accountIdentifier);
     }
 
     public List<ProductInstance> fetchProductInstances(@NotNull String customer) {
@@ -114,7 +144,23 @@ public class InteropDepositService {
     }
 
     public ProductInstance findProductInstance(@NotNull String accountIdentifier) {
-        return depositAccountManager.findProductInstance(accountIdentifier);
+        return LookupContext.lookup(CACHE_PRODUCT_INSTANCE, accountIdentifier,
+                () -> productInstanceCache.get(accountIdentifier, () -> depositAccountManager.findProductInstance(accountIdentifier)));
+    }
+
+    /** Evicts the product instance of the account, or all the product instances of the customer */
+    public void evictProductInstance(@NotNull String accountOrCustomerIdentifier) {
+        productInstanceCache.invalidate(accountOrCustomerIdentifier);
+        productInstanceCache.invalidateGroup(accountOrCustomerIdentifier);
+    }
+
+    /** Evicts the product instances of the current tenant which belong to the product definition */
+    public void evictProductInstances(@NotNull String productIdentifier) {
+        productInstanceCache.invalidateIf((accountIdentifier, productInstance) -> productIdentifier.equals(productInstance.getProductIdentifier()));
+    }
+
+    public void evictProductInstances() {
+        productInstanceCache.invalidateTenant();
     }
 
     public void dividendDistribution(@NotNull String identifier, @NotNull DividendDistribution distribution) {
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.helper;
+
+import com.google.gson.Gson;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Publishes interoperation events for changes not made through a command handler, in the same form as
+ * {@link org.apache.fineract.cn.command.annotation.EventEmitter} does.
+ */
+@Component
+public class InteropEventSender {
+
+    private final JmsTemplate jmsTemplate;
+    private final Gson gson;
+
+    @Autowired
+    public InteropEventSender(JmsTemplate jmsTemplate,
+                              @Qualifier(ServiceConstants.GSON_NAME) Gson gson) {
+        this.jmsTemplate = jmsTemplate;
+        this.gson = gson;
+    }
+
+    public void sendEvent(@NotNull String selectorName, @NotNull String selectorValue, @NotNull Object payload) {
+        String tenant = TenantContextHolder.checkedGetIdentifier();
+        jmsTemplate.convertAndSend(gson.toJson(payload), message -> {
+            message.setStringProperty(TenantHeaderFilter.TENANT_HEADER, tenant);
+            message.setStringProperty(selectorName, selectorValue);
+            return message;
+        });
+    }
+}
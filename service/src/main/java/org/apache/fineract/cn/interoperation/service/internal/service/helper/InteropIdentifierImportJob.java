@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.helper;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierImportState;
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierBulkResponseData;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierItemData;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropIdentifierResultData;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierImportEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierImportRepository;
+import org.apache.fineract.cn.interoperation.service.internal.service.InteropService;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a party identifier CSV file into the identifier table with constant memory, independent of the size of the file.
+ * <p>
+ * The records are registered in chunks, every chunk in its own transaction together with the number of the last record of the
+ * chunk, so an interrupted import is resumed after the last committed record. The accounts are validated before the chunk
+ * transaction, the result of the validation is cached for the whole import.
+ * <p>
+ * The file must have a header with the columns idType, idValue, subIdOrType (optional) and accountId.
+ * Rejected records are appended to [file].rejected.csv before their chunk is committed, with the record number, the columns,
+ * the status and the reason of the rejection. A chunk rolled back after the write is repeated on resume, so a record may be
+ * listed twice but a rejection is never lost.
+ */
+@Component
+public class InteropIdentifierImportJob {
+
+    public static final String COLUMN_ID_TYPE = "idType";
+    public static final String COLUMN_ID_VALUE = "idValue";
+    public static final String COLUMN_SUB_ID_OR_TYPE = "subIdOrType";
+    public static final String COLUMN_ACCOUNT_ID = "accountId";
+
+    public static final String REJECTED_SUFFIX = ".rejected.csv";
+
+    private static final CSVFormat IMPORT_FORMAT = CSVFormat.DEFAULT
+            .withFirstRecordAsHeader()
+            .withIgnoreHeaderCase()
+            .withIgnoreEmptyLines()
+            .withTrim();
+
+    private static final CSVFormat REJECTED_FORMAT = CSVFormat.DEFAULT;
+
+    private static final String STATUS_INVALID = "INVALID";
+
+    private final Logger logger;
+    private final InteropService interopService;
+    private final InteropIdentifierImportRepository importRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final long accountCacheSize;
+
+    @Autowired
+    public InteropIdentifierImportJob(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                                      InteropService interopService,
+                                      InteropIdentifierImportRepository importRepository,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${interoperation.identifierImport.chunkSize:1000}") int chunkSize,
+                                      @Value("${interoperation.identifierImport.accountCacheSize:100000}") long accountCacheSize) {
+        this.logger = logger;
+        this.interopService = interopService;
+        this.importRepository = importRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.accountCacheSize = accountCacheSize;
+    }
+
+    @Async
+    public void runAsync(@NotNull String identifier, @NotNull Path file) {
+        run(identifier, file);
+    }
+
+    /** Imports the records of the file after the last committed record of the import */
+    public void run(@NotNull String identifier, @NotNull Path file) {
+        InteropIdentifierImportEntity importEntity = importRepository.findOneByIdentifier(identifier);
+        long committedRecord = importEntity.getCommittedRecord();
+        String createdBy = importEntity.getCreatedBy();
+        logger.info("Identifier import {} of {} started after record {}", identifier, file, committedRecord);
+
+        // account -> rejection reason, empty for valid accounts
+        Cache<String, String> accountValidations = CacheBuilder.newBuilder().maximumSize(accountCacheSize).build();
+        Chunk chunk = new Chunk(chunkSize);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             CSVParser parser = IMPORT_FORMAT.parse(reader);
+             Writer rejectedWriter = Files.newBufferedWriter(rejectedFile(file), StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+             CSVPrinter rejected = new CSVPrinter(rejectedWriter, REJECTED_FORMAT)) {
+            validateHeader(parser.getHeaderMap());
+
+            for (CSVRecord record : parser) {
+                long recordNumber = record.getRecordNumber();
+                if (recordNumber <= committedRecord)
+                    continue;
+                chunk.add(recordNumber, record);
+                if (chunk.size() >= chunkSize) {
+                    commitChunk(identifier, chunk, accountValidations, createdBy, rejected);
+                    chunk.clear();
+                }
+            }
+            if (chunk.size() > 0)
+                commitChunk(identifier, chunk, accountValidations, createdBy, rejected);
+
+            finish(identifier, InteropIdentifierImportState.COMPLETED, null);
+        } catch (IOException | RuntimeException ex) {
+            logger.error("Identifier import " + identifier + " of " + file + " failed", ex);
+            String message = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+            finish(identifier, InteropIdentifierImportState.FAILED, message.length() > InteropIdentifierImportEntity.MESSAGE_LENGTH
+                    ? message.substring(0, InteropIdentifierImportEntity.MESSAGE_LENGTH) : message);
+        }
+    }
+
+    public static Path rejectedFile(@NotNull Path file) {
+        return file.resolveSibling(file.getFileName().toString() + REJECTED_SUFFIX);
+    }
+
+    private void commitChunk(@NotNull String identifier, @NotNull Chunk chunk, @NotNull Cache<String, String> accountValidations,
+                             @NotNull String createdBy, @NotNull CSVPrinter rejected) {
+        // remote validations outside of the transaction
+        Map<String, String> invalidAccounts = new HashMap<>();
+        for (String accountId : chunk.getAccountIds()) {
+            String invalidMessage = accountValidations.getIfPresent(accountId);
+            if (invalidMessage == null) {
+                String message = interopService.validateIdentifierAccount(accountId);
+                invalidMessage = message == null ? "" : message;
+                accountValidations.put(accountId, invalidMessage);
+            }
+            if (!invalidMessage.isEmpty())
+                invalidAccounts.put(accountId, invalidMessage);
+        }
+
+        transactionTemplate.execute(status -> {
+            InteropIdentifierBulkResponseData result = chunk.items.isEmpty()
+                    ? null
+                    : interopService.registerAccountIdentifiers(chunk.items, invalidAccounts::get, createdBy);
+            try {
+                writeRejected(chunk, result, rejected);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Can not write the rejected records of the identifier import", ex);
+            }
+
+            InteropIdentifierImportEntity importEntity = importRepository.findOneByIdentifier(identifier);
+            importEntity.setCommittedRecord(chunk.lastRecord);
+            importEntity.setRegistered(importEntity.getRegistered() + (result == null ? 0 : result.getRegistered()));
+            importEntity.setFailed(importEntity.getFailed() + chunk.invalid.size() + (result == null ? 0 : result.getFailed()));
+            importEntity.setLastModifiedOn(getNow());
+            importRepository.save(importEntity);
+            return result;
+        });
+    }
+
+    /** Writes the rejected records of the chunk, flushed before the chunk is committed */
+    private static void writeRejected(@NotNull Chunk chunk, InteropIdentifierBulkResponseData response, @NotNull CSVPrinter rejected)
+            throws IOException {
+        for (Object[] invalid : chunk.invalid)
+            rejected.printRecord(invalid);
+        if (response != null) {
+            List<InteropIdentifierResultData> results = response.getResults();
+            for (int i = 0; i < results.size(); i++) {
+                InteropIdentifierResultData result = results.get(i);
+                if (result.getMessage() != null)
+                    rejected.printRecord(chunk.itemRecords.get(i), result.getIdType(), result.getIdValue(), result.getSubIdOrType(),
+                            result.getAccountId(), result.getStatus(), result.getMessage());
+            }
+        }
+        rejected.flush();
+    }
+
+    private void finish(@NotNull String identifier, @NotNull InteropIdentifierImportState state, String message) {
+        InteropIdentifierImportEntity importEntity = transactionTemplate.execute(status -> {
+            InteropIdentifierImportEntity entity = importRepository.findOneByIdentifier(identifier);
+            entity.setState(state);
+            entity.setMessage(message);
+            entity.setLastModifiedOn(getNow());
+            return importRepository.save(entity);
+        });
+        logger.info("Identifier import {} {} at record {}: {} registered, {} failed", identifier, state,
+                importEntity.getCommittedRecord(), importEntity.getRegistered(), importEntity.getFailed());
+    }
+
+    private static void validateHeader(Map<String, Integer> header) {
+        for (String column : new String[]{COLUMN_ID_TYPE, COLUMN_ID_VALUE, COLUMN_ACCOUNT_ID}) {
+            if (header == null || header.keySet().stream().noneMatch(column::equalsIgnoreCase))
+                throw new UnsupportedOperationException("Column " + column + " is missing from the header of the import file");
+        }
+    }
+
+    private static InteropIdentifierItemData toItem(@NotNull CSVRecord record) {
+        if (!record.isConsistent())
+            throw new IllegalArgumentException("Number of columns does not match the header");
+
+        InteropIdentifierType idType = InteropIdentifierType.valueOf(getValue(record, COLUMN_ID_TYPE, true, 32).toUpperCase());
+        String idValue = getValue(record, COLUMN_ID_VALUE, true, 128);
+        String subIdOrType = record.isMapped(COLUMN_SUB_ID_OR_TYPE) ? getValue(record, COLUMN_SUB_ID_OR_TYPE, false, 128) : null;
+        String accountId = getValue(record, COLUMN_ACCOUNT_ID, true, 32);
+        return new InteropIdentifierItemData(accountId, idType, idValue, subIdOrType);
+    }
+
+    private static String getValue(@NotNull CSVRecord record, @NotNull String column, boolean mandatory, int maxLength) {
+        String value = record.get(column);
+        if (value == null || value.isEmpty()) {
+            if (mandatory)
+                throw new IllegalArgumentException(column + " is empty");
+            return null;
+        }
+        if (value.length() > maxLength)
+            throw new IllegalArgumentException(column + " is longer than " + maxLength);
+        return value;
+    }
+
+    private static String getRawValue(@NotNull CSVRecord record, @NotNull String column) {
+        return record.isSet(column) ? record.get(column) : null;
+    }
+
+    private static LocalDateTime getNow() {
+        return LocalDateTime.now(Clock.systemUTC());
+    }
+
+    /** Records of the import between two commits */
+    private static final class Chunk {
+        private final List<InteropIdentifierItemData> items;
+        private final List<Long> itemRecords;
+        private final List<Object[]> invalid = new ArrayList<>();
+        private long lastRecord;
+
+        private Chunk(int chunkSize) {
+            this.items = new ArrayList<>(chunkSize);
+            this.itemRecords = new ArrayList<>(chunkSize);
+        }
+
+        private void add(long recordNumber, @NotNull CSVRecord record) {
+            lastRecord = recordNumber;
+            try {
+                items.add(toItem(record));
+                itemRecords.add(recordNumber);
+            } catch (IllegalArgumentException ex) {
+                invalid.add(new Object[]{recordNumber, getRawValue(record, COLUMN_ID_TYPE), getRawValue(record, COLUMN_ID_VALUE),
+                        getRawValue(record, COLUMN_SUB_ID_OR_TYPE), getRawValue(record, COLUMN_ACCOUNT_ID), STATUS_INVALID, ex.getMessage()});
+            }
+        }
+
+        private int size() {
+            return items.size() + invalid.size();
+        }
+
+        private Set<String> getAccountIds() {
+            return items.stream().map(InteropIdentifierItemData::getAccountId).collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+
+        private void clear() {
+            items.clear();
+            itemRecords.clear();
+            invalid.clear();
+        }
+    }
+}
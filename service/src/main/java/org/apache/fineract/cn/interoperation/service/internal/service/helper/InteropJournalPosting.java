@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.helper;
+
+import org.apache.fineract.cn.accounting.api.v1.domain.Creditor;
+import org.apache.fineract.cn.accounting.api.v1.domain.Debtor;
+import org.apache.fineract.cn.accounting.api.v1.domain.JournalEntry;
+
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Collects the journal entries (legs) booked for one interoperation action.
+ * <p>
+ * In {@link PostingMode#SEPARATE} mode every leg is posted when it is added. In {@link PostingMode#COMBINED} mode
+ * the legs are netted by account and posted as one balanced multi-debtor/multi-creditor journal entry on {@link #flush()},
+ * with one ledger call per action.
+ * <p>
+ * Legs taking funds out of the customer account (the account is a creditor of the leg) are always posted with the direct sink,
+ * because the withdrawable balance of the next transfer is checked against the ledger. Only the legs settling prepared (payable)
+ * or NOSTRO funds may go to the deferred sink (ledger outbox). In combined mode the whole entry is posted directly if any leg is direct.
+ */
+public class InteropJournalPosting {
+
+    public enum PostingMode {
+        SEPARATE,
+        COMBINED
+    }
+
+    /** posts one journal entry to the ledger, or to the ledger outbox */
+    private final Consumer<JournalEntry> sink;
+    /** posts one journal entry to the ledger synchronously */
+    private final Consumer<JournalEntry> directSink;
+    @NotNull
+    private final String customerAccount;
+    private final PostingMode mode;
+    @NotNull
+    private final JournalEntry combinedEntry;
+
+    /** account number -> credited minus debited amount */
+    private final Map<String, BigDecimal> balances = new LinkedHashMap<>();
+    private int legs;
+    private boolean direct;
+
+    /**
+     * @param combinedEntry header (identifier, type, date, message, clerk) of the journal entry posted in combined mode
+     */
+    public InteropJournalPosting(@NotNull Consumer<JournalEntry> sink, @NotNull Consumer<JournalEntry> directSink, @NotNull String customerAccount,
+                                 @NotNull PostingMode mode, @NotNull JournalEntry combinedEntry) {
+        this.sink = sink;
+        this.directSink = directSink;
+        this.customerAccount = customerAccount;
+        this.mode = mode;
+        this.combinedEntry = combinedEntry;
+    }
+
+    public void add(@NotNull JournalEntry journalEntry) {
+        boolean debitsCustomer = journalEntry.getCreditors().stream().anyMatch(creditor -> customerAccount.equals(creditor.getAccountNumber()));
+        if (mode == PostingMode.SEPARATE) {
+            (debitsCustomer ? directSink : sink).accept(journalEntry);
+            return;
+        }
+        direct |= debitsCustomer;
+        journalEntry.getCreditors().forEach(creditor -> balances.merge(creditor.getAccountNumber(), new BigDecimal(creditor.getAmount()), BigDecimal::add));
+        journalEntry.getDebtors().forEach(debtor -> balances.merge(debtor.getAccountNumber(), new BigDecimal(debtor.getAmount()).negate(), BigDecimal::add));
+        legs++;
+    }
+
+    /** Posts the netted legs in combined mode, nothing is posted if the legs cancel out */
+    public void flush() {
+        if (mode == PostingMode.SEPARATE || legs == 0)
+            return;
+
+        Set<Debtor> debtors = new HashSet<>();
+        Set<Creditor> creditors = new HashSet<>();
+        balances.forEach((accountNumber, balance) -> {
+            int signum = balance.signum();
+            if (signum > 0) {
+                Creditor creditor = new Creditor();
+                creditor.setAccountNumber(accountNumber);
+                creditor.setAmount(Double.toString(balance.doubleValue()));
+                creditors.add(creditor);
+            } else if (signum < 0) {
+                Debtor debtor = new Debtor();
+                debtor.setAccountNumber(accountNumber);
+                debtor.setAmount(Double.toString(balance.negate().doubleValue()));
+                debtors.add(debtor);
+            }
+        });
+        balances.clear();
+        legs = 0;
+        boolean postDirect = direct;
+        direct = false;
+
+        if (debtors.isEmpty())
+            return;
+
+        combinedEntry.setDebtors(debtors);
+        combinedEntry.setCreditors(creditors);
+        (postDirect ? directSink : sink).accept(combinedEntry);
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.helper;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.fineract.cn.accounting.api.v1.client.JournalEntryValidationException;
+import org.apache.fineract.cn.accounting.api.v1.domain.JournalEntry;
+import org.apache.fineract.cn.api.util.UserContext;
+import org.apache.fineract.cn.api.util.UserContextHolder;
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropLedgerOutboxState;
+import org.apache.fineract.cn.interoperation.api.v1.domain.data.InteropLedgerOutboxEntryData;
+import org.apache.fineract.cn.interoperation.service.ServiceConstants;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropLedgerOutboxEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropLedgerOutboxRepository;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.apache.fineract.cn.permittedfeignclient.service.ApplicationAccessTokenService;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.validation.constraints.NotNull;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox of the ledger postings (interoperation.ledgerOutbox.enabled).
+ * <p>
+ * The journal entries are stored in the transaction of the interoperation action and are posted to the ledger after the
+ * commit, in batches, by one dispatcher per tenant. A failed posting is retried with exponential backoff. Retries are idempotent:
+ * the ledger rejects a journal entry with an already posted transaction identifier, which is taken as posted.
+ * An entry rejected by the ledger as invalid is parked as {@link InteropLedgerOutboxState#FAILED} and is not retried until it is requeued.
+ * <p>
+ * Every instance of the service dispatches the same table: a dispatcher claims the due entries with its own claim token and a
+ * lease (claimLease seconds), an entry whose dispatcher died is claimed again after the lease. An entry deleted meanwhile by an
+ * other dispatcher is taken as posted.
+ * <p>
+ * The entries of an interoperation transaction are posted in the order they were enqueued: an entry is not due while an earlier
+ * entry of its transaction is still in the outbox, waiting for retry or parked as failed.
+ * <p>
+ * The dispatcher posts with a fresh application access token of the configured user, not with the token of the request
+ * which enqueued the entry. The tenants listed in interoperation.ledgerOutbox.tenants are dispatched on startup, every tenant
+ * seen by this instance is swept periodically, so entries left by a restart or a failed dispatch are posted without new traffic.
+ * <p>
+ * Backpressure: when more than maxPending entries are waiting, {@link #acceptsMore()} is false and the caller has to post
+ * synchronously, so a ledger outage can not grow the outbox without limit. The number of waiting entries is counted in memory
+ * and corrected from the table by every dispatch run.
+ */
+@Component
+public class InteropLedgerOutbox {
+
+    private final Logger logger;
+    private final Gson gson;
+    private final InteropLedgerOutboxRepository outboxRepository;
+    private final InteropAccountingService accountingService;
+    private final ApplicationAccessTokenService accessTokenService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final String user;
+    private final String[] tenants;
+    private final int batchSize;
+    private final long maxPending;
+    private final long retryDelay;
+    private final long maxRetryDelay;
+    private final long sweepInterval;
+    private final long claimLease;
+
+    private final ScheduledExecutorService dispatcher;
+    /** tenant -> dispatch is running or scheduled, the keys are the tenants swept periodically */
+    private final Map<String, AtomicBoolean> dispatching = new ConcurrentHashMap<>();
+    /** tenant -> pending entries, counted on enqueue and post, corrected by every dispatch */
+    private final Map<String, AtomicLong> pending = new ConcurrentHashMap<>();
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong claims = new AtomicLong();
+
+    @Autowired
+    public InteropLedgerOutbox(@Qualifier(ServiceConstants.LOGGER_NAME) Logger logger,
+                               @Qualifier(ServiceConstants.GSON_NAME) Gson gson,
+                               InteropLedgerOutboxRepository outboxRepository,
+                               InteropAccountingService accountingService,
+                               ApplicationAccessTokenService accessTokenService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${interoperation.ledgerOutbox.enabled:false}") boolean enabled,
+                               @Value("${interoperation.ledgerOutbox.user:}") String user,
+                               @Value("${interoperation.ledgerOutbox.tenants:}") String[] tenants,
+                               @Value("${interoperation.ledgerOutbox.batchSize:100}") int batchSize,
+                               @Value("${interoperation.ledgerOutbox.maxPending:10000}") long maxPending,
+                               @Value("${interoperation.ledgerOutbox.retryDelay:5}") long retryDelay,
+                               @Value("${interoperation.ledgerOutbox.maxRetryDelay:300}") long maxRetryDelay,
+                               @Value("${interoperation.ledgerOutbox.sweepInterval:60}") long sweepInterval,
+                               @Value("${interoperation.ledgerOutbox.claimLease:60}") long claimLease) {
+        if (enabled && user.isEmpty())
+            throw new IllegalStateException("interoperation.ledgerOutbox.user is required when the ledger outbox is enabled");
+
+        this.logger = logger;
+        this.gson = gson;
+        this.outboxRepository = outboxRepository;
+        this.accountingService = accountingService;
+        this.accessTokenService = accessTokenService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.user = user;
+        this.tenants = tenants;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        this.sweepInterval = sweepInterval;
+        this.claimLease = claimLease;
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "interop-ledger-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Dispatches the configured tenants and starts the periodic sweep of the known tenants */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled)
+            return;
+
+        for (String tenant : tenants) {
+            if (!tenant.trim().isEmpty())
+                requestDispatch(tenant.trim());
+        }
+        if (sweepInterval > 0)
+            dispatcher.scheduleWithFixedDelay(() -> dispatching.keySet().forEach(this::requestDispatch), sweepInterval, sweepInterval, TimeUnit.SECONDS);
+    }
+
+    /** @return false if the outbox is disabled or too many entries are waiting, the entry has to be posted synchronously */
+    public boolean acceptsMore() {
+        if (!enabled)
+            return false;
+
+        String tenant = TenantContextHolder.checkedGetIdentifier();
+        if (!dispatching.containsKey(tenant))
+            requestDispatch(tenant); // first use of the tenant since startup, posts the entries left by the previous run
+        return getPending(tenant).get() < maxPending;
+    }
+
+    /** @return true if entries of the interoperation transaction are in the outbox, its next entries have to be enqueued too */
+    public boolean hasEntries(@NotNull String transactionCode) {
+        return enabled && outboxRepository.countByTransactionCode(transactionCode) > 0;
+    }
+
+    /** Stores the journal entry of the interoperation transaction in the current transaction, it is posted after the commit */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(@NotNull JournalEntry journalEntry, @NotNull String transactionCode) {
+        outboxRepository.save(new InteropLedgerOutboxEntity(journalEntry.getTransactionIdentifier(), transactionCode, gson.toJson(journalEntry),
+                getNow()));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            String tenant = TenantContextHolder.checkedGetIdentifier();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    getPending(tenant).incrementAndGet();
+                    requestDispatch(tenant);
+                }
+            });
+        }
+    }
+
+    /** Starts the dispatcher of the current tenant, unless it is already running */
+    public void requestDispatch() {
+        requestDispatch(TenantContextHolder.checkedGetIdentifier());
+    }
+
+    /** @return the entries of the current tenant rejected by the ledger */
+    @NotNull
+    public List<InteropLedgerOutboxEntryData> getFailedEntries(int page, int size) {
+        return outboxRepository.findByStateOrderByIdAsc(InteropLedgerOutboxState.FAILED, new PageRequest(page, size))
+                .stream()
+                .map(e -> new InteropLedgerOutboxEntryData(e.getTransactionIdentifier(), e.getState(), e.getAttempts(), e.getLastError(), e.getCreatedOn()))
+                .collect(Collectors.toList());
+    }
+
+    /** Requeues an entry rejected by the ledger, to be called after the cause of the rejection was fixed */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void requeue(@NotNull String transactionIdentifier) {
+        InteropLedgerOutboxEntity entry = outboxRepository.findOneByTransactionIdentifier(transactionIdentifier);
+        if (entry == null || entry.getState() != InteropLedgerOutboxState.FAILED)
+            throw ServiceException.notFound("Failed ledger posting {0} not found", transactionIdentifier);
+
+        entry.setState(InteropLedgerOutboxState.PENDING);
+        entry.setClaimedBy(null);
+        entry.setAttempts(0);
+        entry.setNextAttemptOn(getNow());
+        outboxRepository.save(entry);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                requestDispatch();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    private void requestDispatch(@NotNull String tenant) {
+        if (dispatching.computeIfAbsent(tenant, key -> new AtomicBoolean()).compareAndSet(false, true))
+            schedule(tenant, 0);
+    }
+
+    /** Runs the dispatch of the tenant on the dispatcher thread after the delay (seconds), with a fresh access token */
+    private void schedule(@NotNull String tenant, long delay) {
+        dispatcher.schedule(() -> {
+            try {
+                TenantContextHolder.setIdentifier(tenant);
+                UserContextHolder.setUserContext(new UserContext(user, accessTokenService.getAccessToken(user, tenant)));
+                dispatch(tenant);
+            } catch (RuntimeException ex) {
+                dispatching.get(tenant).set(false); // the next sweep restarts the dispatch
+                logger.error("Ledger outbox dispatch of tenant " + tenant + " failed", ex);
+            } finally {
+                UserContextHolder.clear();
+                TenantContextHolder.clear();
+            }
+        }, delay, TimeUnit.SECONDS);
+    }
+
+    private void dispatch(@NotNull String tenant) {
+        int posted = 0;
+        boolean failed = false;
+        List<InteropLedgerOutboxEntity> batch;
+        do {
+            // the first entry of a transaction is due only, the next ones are due when it is posted
+            batch = claim();
+            for (InteropLedgerOutboxEntity entry : batch) {
+                if (post(entry)) {
+                    posted++;
+                    getPending(tenant).updateAndGet(count -> Math.max(0L, count - 1));
+                } else
+                    failed = true;
+            }
+        } while (!failed && !batch.isEmpty());
+        getPending(tenant).set(outboxRepository.countByState(InteropLedgerOutboxState.PENDING));
+
+        if (posted > 0 || failed)
+            logger.info("Ledger outbox of tenant {}: {} journal entries processed{}", tenant, posted, failed ? ", posting failed" : "");
+
+        // entries waiting for retry or claimed by an other dispatcher, or enqueued while the last batch was being posted
+        InteropLedgerOutboxEntity next = findNext();
+        if (next == null) {
+            dispatching.get(tenant).set(false);
+            next = findNext(); // enqueued after the check, its dispatch request was ignored
+            if (next == null || !dispatching.get(tenant).compareAndSet(false, true))
+                return;
+        }
+        schedule(tenant, Math.max(1, Duration.between(getNow(), next.getNextAttemptOn()).getSeconds()));
+    }
+
+    /** @return the due entries claimed by this dispatcher, empty if there is none */
+    @NotNull
+    private List<InteropLedgerOutboxEntity> claim() {
+        LocalDateTime now = getNow();
+        List<Long> ids = outboxRepository.findDueIds(InteropLedgerOutboxState.PENDING, now, new PageRequest(0, batchSize));
+        if (ids.isEmpty())
+            return Collections.emptyList();
+
+        String claimedBy = instanceId + "/" + claims.incrementAndGet();
+        outboxRepository.claim(ids, InteropLedgerOutboxState.PENDING, now, claimedBy, now.plusSeconds(claimLease));
+        return outboxRepository.findByClaimedByOrderByIdAsc(claimedBy);
+    }
+
+    /** @return the pending entry, not held back by an earlier entry of its transaction, which is due first */
+    private InteropLedgerOutboxEntity findNext() {
+        List<InteropLedgerOutboxEntity> next = outboxRepository.findNext(InteropLedgerOutboxState.PENDING, new PageRequest(0, 1));
+        return next.isEmpty() ? null : next.get(0);
+    }
+
+    private AtomicLong getPending(@NotNull String tenant) {
+        return pending.computeIfAbsent(tenant, key -> new AtomicLong());
+    }
+
+    /** @return true if the journal entry is on the ledger or was rejected for good, false if it has to be retried */
+    private boolean post(@NotNull InteropLedgerOutboxEntity entry) {
+        try {
+            JournalEntry journalEntry = gson.fromJson(entry.getJournalEntry(), JournalEntry.class);
+            if (!accountingService.createJournalEntryIfAbsent(journalEntry))
+                logger.info("Journal entry {} was already posted", entry.getTransactionIdentifier());
+            if (outboxRepository.deleteEntry(entry.getId()) == 0)
+                logger.info("Journal entry {} was already removed from the outbox by an other dispatcher", entry.getTransactionIdentifier());
+            return true;
+        } catch (JournalEntryValidationException | JsonParseException ex) {
+            // the interoperation transfer was already committed, the entry needs manual action
+            logger.error("Journal entry {} was rejected by the ledger and is parked as failed: {}", entry.getTransactionIdentifier(), ex.getMessage());
+            update(entry, InteropLedgerOutboxState.FAILED, getNow(), ex);
+            return true;
+        } catch (RuntimeException ex) {
+            long delay = Math.min(maxRetryDelay, retryDelay << Math.min(entry.getAttempts(), 20));
+            logger.warn("Can not post journal entry {} (attempt {}), retry in {}s: {}", entry.getTransactionIdentifier(), entry.getAttempts() + 1,
+                    delay, ex.getMessage());
+            update(entry, InteropLedgerOutboxState.PENDING, getNow().plusSeconds(delay), ex);
+            return false;
+        }
+    }
+
+    private void update(@NotNull InteropLedgerOutboxEntity entry, @NotNull InteropLedgerOutboxState state, @NotNull LocalDateTime nextAttemptOn,
+                        @NotNull RuntimeException ex) {
+        transactionTemplate.execute(status -> {
+            InteropLedgerOutboxEntity current = outboxRepository.findOne(entry.getId());
+            // not when the claim expired and an other dispatcher took the entry over
+            if (current != null && Objects.equals(current.getClaimedBy(), entry.getClaimedBy())) {
+                current.setState(state);
+                current.setClaimedBy(null);
+                current.setAttempts(entry.getAttempts() + 1);
+                current.setNextAttemptOn(nextAttemptOn);
+                current.setLastError(ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage());
+                outboxRepository.save(current);
+            }
+            return null;
+        });
+    }
+
+    private static LocalDateTime getNow() {
+        return LocalDateTime.now(Clock.systemUTC());
+    }
+}
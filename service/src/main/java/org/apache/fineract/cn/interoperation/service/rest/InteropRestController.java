@@ -26,6 +26,7 @@ import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType
 import org.apache.fineract.cn.interoperation.api.v1.domain.InteropTransferActionType;
 import org.apache.fineract.cn.interoperation.api.v1.domain.data.*;
 import org.apache.fineract.cn.interoperation.service.internal.command.InitializeServiceCommand;
+import org.apache.fineract.cn.interoperation.service.internal.service.InteropIdentifierImportService;
 import org.apache.fineract.cn.interoperation.service.internal.service.InteropService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -41,7 +42,9 @@ import org.springframework.web.bind.annotation.RestController;
 import javax.validation.Valid;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
+import java.util.List;
 
+import static org.apache.fineract.cn.interoperation.api.v1.PermittableGroupIds.INTEROPERATION_BULK;
 import static org.apache.fineract.cn.interoperation.api.v1.PermittableGroupIds.INTEROPERATION_SINGLE;
 
 @SuppressWarnings("unused")
@@ -53,11 +56,15 @@ public class InteropRestController {
 
     private InteropService interopService;
 
+    private InteropIdentifierImportService identifierImportService;
+
     @Autowired
     public InteropRestController(CommandGateway commandGateway,
-                                 InteropService interopService) {
+                                 InteropService interopService,
+                                 InteropIdentifierImportService identifierImportService) {
         this.commandGateway = commandGateway;
         this.interopService = interopService;
+        this.identifierImportService = identifierImportService;
     }
 
     @Permittable(value = AcceptedTokenType.SYSTEM)
@@ -85,6 +92,68 @@ public class InteropRestController {
         return ResponseEntity.ok().build();
     }
 
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
+    @RequestMapping(
+            value = "/nostro/refresh",
+            method = RequestMethod.POST,
+            consumes = MediaType.ALL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<Void> refreshNostroAccount() {
+        interopService.refreshNostroAccount();
+        return ResponseEntity.ok().build();
+    }
+
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
+    @RequestMapping(
+            value = "/alternative-accounts/sync",
+            method = RequestMethod.POST,
+            consumes = MediaType.ALL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<Void> syncAlternativeAccountNumbers() {
+        interopService.syncAlternativeAccountNumbers();
+        return ResponseEntity.accepted().build();
+    }
+
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
+    @RequestMapping(
+            value = "/ledger-outbox/dispatch",
+            method = RequestMethod.POST,
+            consumes = MediaType.ALL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<Void> dispatchLedgerOutbox() {
+        interopService.dispatchLedgerOutbox();
+        return ResponseEntity.accepted().build();
+    }
+
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
+    @RequestMapping(
+            value = "/ledger-outbox/failed",
+            method = RequestMethod.GET,
+            consumes = MediaType.ALL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseBody
+    public ResponseEntity<List<InteropLedgerOutboxEntryData>> getFailedLedgerPostings(
+            @RequestParam(value = "pageIndex", required = false, defaultValue = "0") int pageIndex,
+            @RequestParam(value = "size", required = false, defaultValue = "100") int size) {
+        return ResponseEntity.ok(interopService.getFailedLedgerPostings(pageIndex, size));
+    }
+
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
+    @RequestMapping(
+            value = "/ledger-outbox/failed/{transactionIdentifier}/requeue",
+            method = RequestMethod.POST,
+            consumes = MediaType.ALL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<Void> requeueLedgerPosting(@PathVariable("transactionIdentifier") String transactionIdentifier) {
+        interopService.requeueLedgerPosting(transactionIdentifier);
+        return ResponseEntity.accepted().build();
+    }
+
     @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
     @RequestMapping(
             value = "/parties/{idType}/{idValue}",
@@ -93,8 +162,9 @@ public class InteropRestController {
             produces = MediaType.APPLICATION_JSON_VALUE
     )
     public ResponseEntity<InteropIdentifierData> getAccountByIdentifier(@PathVariable("idType") InteropIdentifierType idType,
-                                                                        @PathVariable("idValue") String idValue) {
-        InteropIdentifierData account = interopService.getAccountByIdentifier(idType, idValue, null);
+                                                                        @PathVariable("idValue") String idValue,
+                                                                        @RequestParam(value = "details", required = false, defaultValue = "false") boolean details) {
+        InteropIdentifierData account = interopService.getAccountByIdentifier(idType, idValue, null, details);
 
         return ResponseEntity.ok(account);
     }
@@ -108,12 +178,69 @@ public class InteropRestController {
     )
     public ResponseEntity<InteropIdentifierData> getAccountByIdentifier(@PathVariable("idType") InteropIdentifierType idType,
                                                                         @PathVariable("idValue") String idValue,
-                                                                        @PathVariable(value = "subIdOrType") String subIdOrType) {
-        InteropIdentifierData account = interopService.getAccountByIdentifier(idType, idValue, subIdOrType);
+                                                                        @PathVariable(value = "subIdOrType") String subIdOrType,
+                                                                        @RequestParam(value = "details", required = false, defaultValue = "false") boolean details) {
+        InteropIdentifierData account = interopService.getAccountByIdentifier(idType, idValue, subIdOrType, details);
 
         return ResponseEntity.ok(account);
     }
 
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_BULK)
+    @RequestMapping(
+            value = "/parties/lookup",
+            method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseBody
+    public ResponseEntity<InteropIdentifierLookupResponseData> getAccountsByIdentifiers(@RequestBody @Valid InteropIdentifierLookupData requestData) {
+        InteropIdentifierLookupResponseData result = interopService.getAccountsByIdentifiers(requestData);
+
+        return ResponseEntity.ok(result);
+    }
+
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_BULK)
+    @RequestMapping(
+            value = "/parties/imports",
+            method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseBody
+    public ResponseEntity<InteropIdentifierImportResponseData> startIdentifierImport(@RequestBody @Valid InteropIdentifierImportData requestData) {
+        InteropIdentifierImportResponseData result = identifierImportService.startImport(requestData);
+
+        return ResponseEntity.accepted().body(result);
+    }
+
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_BULK)
+    @RequestMapping(
+            value = "/parties/imports/{identifier}",
+            method = RequestMethod.GET,
+            consumes = MediaType.ALL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseBody
+    public ResponseEntity<InteropIdentifierImportResponseData> getIdentifierImport(@PathVariable("identifier") String identifier) {
+        InteropIdentifierImportResponseData result = identifierImportService.getImport(identifier);
+
+        return ResponseEntity.ok(result);
+    }
+
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_BULK)
+    @RequestMapping(
+            value = "/parties/imports/{identifier}/resume",
+            method = RequestMethod.POST,
+            consumes = MediaType.ALL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseBody
+    public ResponseEntity<InteropIdentifierImportResponseData> resumeIdentifierImport(@PathVariable("identifier") String identifier) {
+        InteropIdentifierImportResponseData result = identifierImportService.resumeImport(identifier);
+
+        return ResponseEntity.accepted().body(result);
+    }
+
     @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
     @RequestMapping(
             value = "/parties/{idType}/{idValue}",
@@ -151,6 +278,21 @@ public class InteropRestController {
         return ResponseEntity.ok(result.get());
     }
 
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_BULK)
+    @RequestMapping(
+            value = "/parties/bulk",
+            method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseBody
+    public ResponseEntity<InteropIdentifierBulkResponseData> registerAccountIdentifiers(@RequestBody @Valid InteropIdentifierBulkData requestData)
+            throws Throwable {
+        CommandCallback<InteropIdentifierBulkResponseData> result = commandGateway.process(requestData, InteropIdentifierBulkResponseData.class);
+
+        return ResponseEntity.ok(result.get());
+    }
+
     @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
     @RequestMapping(
             value = "/parties/{idType}/{idValue}",
@@ -184,6 +326,36 @@ public class InteropRestController {
         return ResponseEntity.ok(result.get());
     }
 
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
+    @RequestMapping(
+            value = "/accounts/{accountId}/parties",
+            method = RequestMethod.GET,
+            consumes = MediaType.ALL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseBody
+    public ResponseEntity<InteropAccountIdentifiersData> getAccountIdentifiers(@PathVariable("accountId") String accountId) {
+        InteropAccountIdentifiersData result = interopService.getAccountIdentifiers(accountId);
+
+        return ResponseEntity.ok(result);
+    }
+
+    @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_BULK)
+    @RequestMapping(
+            value = "/accounts/{accountId}/parties",
+            method = RequestMethod.DELETE,
+            consumes = MediaType.ALL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseBody
+    public ResponseEntity<InteropAccountIdentifiersData> deleteAccountIdentifiers(@PathVariable("accountId") String accountId)
+            throws Throwable {
+        CommandCallback<InteropAccountIdentifiersData> result = commandGateway.process(new InteropAccountIdentifiersDeleteCommand(accountId),
+                InteropAccountIdentifiersData.class);
+
+        return ResponseEntity.ok(result.get());
+    }
+
     @Permittable(value = AcceptedTokenType.TENANT, groupId = INTEROPERATION_SINGLE)
     @RequestMapping(
             value = "transactions/{transactionCode}/requests/{requestCode}",
@@ -0,0 +1,32 @@
+--
+-- Licensed to the Apache Software Foundation (ASF) under one
+-- or more contributor license agreements.  See the NOTICE file
+-- distributed with this work for additional information
+-- regarding copyright ownership.  The ASF licenses this file
+-- to you under the Apache License, Version 2.0 (the
+-- "License"); you may not use this file except in compliance
+-- with the License.  You may obtain a copy of the License at
+--
+--   http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+-- log of the deleted party identifiers, replayed on the identifier directory snapshots
+CREATE TABLE hathor_identifier_deletions (
+  id                          BIGINT       NOT NULL AUTO_INCREMENT,
+  customer_account_identifier VARCHAR(32)  NOT NULL,
+  type                        VARCHAR(32)  NOT NULL,
+  a_value                     VARCHAR(128) NOT NULL,
+  sub_value_or_type           VARCHAR(128) NULL,
+  deleted_by                  VARCHAR(32)  NOT NULL,
+  deleted_on                  TIMESTAMP(3) NOT NULL,
+  CONSTRAINT pk_hathor_identifier_deletions PRIMARY KEY (id)
+);
+
+CREATE INDEX ix_hathor_identifier_deletions_on ON hathor_identifier_deletions (deleted_on);
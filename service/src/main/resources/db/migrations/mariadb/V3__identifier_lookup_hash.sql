@@ -0,0 +1,25 @@
+--
+-- Licensed to the Apache Software Foundation (ASF) under one
+-- or more contributor license agreements.  See the NOTICE file
+-- distributed with this work for additional information
+-- regarding copyright ownership.  The ASF licenses this file
+-- to you under the Apache License, Version 2.0 (the
+-- "License"); you may not use this file except in compliance
+-- with the License.  You may obtain a copy of the License at
+--
+--   http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+-- fixed width lookup key: first 8 bytes of MD5(type CHAR(31) lower(a_value) [CHAR(31) lower(sub_value_or_type)]) as signed BIGINT,
+-- calculated only by InteropIdentifierEntity.calcLookupHash, the lower case of the database differs for non-ASCII characters.
+-- Rows inserted without it (existing rows, sample data) are filled in by the service before the first lookup of the tenant.
+ALTER TABLE hathor_identifiers
+  ADD COLUMN lookup_hash BIGINT NULL,
+  ADD INDEX ix_hathor_identifiers_hash (lookup_hash, customer_account_identifier);
@@ -0,0 +1,36 @@
+--
+-- Licensed to the Apache Software Foundation (ASF) under one
+-- or more contributor license agreements.  See the NOTICE file
+-- distributed with this work for additional information
+-- regarding copyright ownership.  The ASF licenses this file
+-- to you under the Apache License, Version 2.0 (the
+-- "License"); you may not use this file except in compliance
+-- with the License.  You may obtain a copy of the License at
+--
+--   http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+
+-- progress of the party identifier CSV imports, an interrupted import is resumed after the committed record
+CREATE TABLE hathor_identifier_imports (
+  id                BIGINT        NOT NULL AUTO_INCREMENT,
+  identifier        VARCHAR(36)   NOT NULL,
+  file_name         VARCHAR(1024) NOT NULL,
+  state             VARCHAR(32)   NOT NULL,
+  committed_record  BIGINT        NOT NULL,
+  registered        BIGINT        NOT NULL,
+  failed            BIGINT        NOT NULL,
+  message           VARCHAR(1024) NULL,
+  created_by        VARCHAR(32)   NOT NULL,
+  created_on        TIMESTAMP(3)  NOT NULL,
+  last_modified_on  TIMESTAMP(3)  NULL,
+  CONSTRAINT pk_hathor_identifier_imports PRIMARY KEY (id),
+  CONSTRAINT uk_hathor_identifier_imports_id UNIQUE (identifier)
+);
@@ -0,0 +1,41 @@
+--
+-- Licensed to the Apache Software Foundation (ASF) under one
+-- or more contributor license agreements.  See the NOTICE file
+-- distributed with this work for additional information
+-- regarding copyright ownership.  The ASF licenses this file
+-- to you under the Apache License, Version 2.0 (the
+-- "License"); you may not use this file except in compliance
+-- with the License.  You may obtain a copy of the License at
+--
+--   http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+
+-- journal entries committed locally and not yet posted to the ledger, a row is deleted when its entry was posted
+-- FAILED rows were rejected by the ledger and are not retried until they are requeued
+-- the rows of an interoperation transaction are posted in the order of the id, a row waits while an earlier one of its transaction is left
+-- a dispatcher claims the due rows with its claim token and moves next_attempt_on to the end of the lease
+CREATE TABLE hathor_ledger_outbox (
+  id                     BIGINT        NOT NULL AUTO_INCREMENT,
+  transaction_identifier VARCHAR(128)  NOT NULL,
+  transaction_code       VARCHAR(36)   NOT NULL,
+  journal_entry          MEDIUMTEXT    NOT NULL,
+  state                  VARCHAR(32)   NOT NULL,
+  attempts               INT           NOT NULL,
+  next_attempt_on        TIMESTAMP(3)  NOT NULL,
+  last_error             VARCHAR(1024) NULL,
+  claimed_by             VARCHAR(64)   NULL,
+  created_on             TIMESTAMP(3)  NOT NULL,
+  CONSTRAINT pk_hathor_ledger_outbox PRIMARY KEY (id),
+  CONSTRAINT uk_hathor_ledger_outbox_id UNIQUE (transaction_identifier)
+);
+
+CREATE INDEX ix_hathor_ledger_outbox_due ON hathor_ledger_outbox (state, next_attempt_on);
+CREATE INDEX ix_hathor_ledger_outbox_transaction ON hathor_ledger_outbox (transaction_code, id);
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.repository;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+public class InteropIdentifierEntityTest {
+
+    @Test
+    public void lookupHashIgnoresCaseOfNonAsciiValues() {
+        Assert.assertEquals(InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "JOS\u00c9.\u00c7A\u011eLAR", "\u00c1RV\u00cdZT\u0170R\u0150"),
+                InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "jos\u00e9.\u00e7a\u011flar", "\u00e1rv\u00edzt\u0171r\u0151"));
+        Assert.assertEquals(InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.EMAIL, "\u0416\u0423\u041a\u041e\u0412@EXAMPLE.ORG", null),
+                InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.EMAIL, "\u0436\u0443\u043a\u043e\u0432@example.org", null));
+    }
+
+    @Test
+    public void lookupHashDoesNotIgnoreAccents() {
+        Assert.assertNotEquals(InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "Jos\u00e9", null),
+                InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "Jose", null));
+    }
+
+    @Test
+    public void lookupHashDoesNotDependOnDefaultLocale() {
+        long expected = InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "TITLE", "INFO");
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            Assert.assertEquals(expected, InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "TITLE", "INFO"));
+            Assert.assertEquals(expected, InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "title", "info"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void lookupHashDependsOnTypeAndSubIdentifier() {
+        long hash = InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "alice", null);
+        Assert.assertNotEquals(hash, InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.EMAIL, "alice", null));
+        Assert.assertNotEquals(hash, InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "alice", ""));
+        Assert.assertNotEquals(InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "ab", "c"),
+                InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "a", "bc"));
+    }
+
+    @Test
+    public void entityStoresLookupHashOfItsKey() {
+        InteropIdentifierEntity identifier = new InteropIdentifierEntity("acc-1", InteropIdentifierType.ALIAS, "M\u00fcller", null, "operator",
+                LocalDateTime.now());
+        Assert.assertEquals(Long.valueOf(InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "M\u00dcLLER", null)),
+                identifier.getLookupHash());
+
+        identifier.setSubValueOrType("Stra\u00dfe");
+        Assert.assertEquals(Long.valueOf(InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "m\u00fcller", "stra\u00dfe")),
+                identifier.getLookupHash());
+
+        identifier.setValue("Maier");
+        Assert.assertEquals(Long.valueOf(InteropIdentifierEntity.calcLookupHash(InteropIdentifierType.ALIAS, "maier", "stra\u00dfe")),
+                identifier.getLookupHash());
+    }
+
+    @Test
+    public void matchesIgnoresCaseOnly() {
+        InteropIdentifierEntity identifier = new InteropIdentifierEntity("acc-1", InteropIdentifierType.ALIAS, "\u00d1and\u00fa", "Gr\u00f6\u00dfe", "operator",
+                LocalDateTime.now());
+        Assert.assertTrue(identifier.matches(InteropIdentifierType.ALIAS, "\u00d1AND\u00da", "GR\u00d6\u00dfE"));
+        Assert.assertFalse(identifier.matches(InteropIdentifierType.ALIAS, "Nandu", "Gr\u00f6\u00dfe"));
+        Assert.assertFalse(identifier.matches(InteropIdentifierType.ALIAS, "\u00d1and\u00fa", null));
+        Assert.assertFalse(identifier.matches(InteropIdentifierType.EMAIL, "\u00d1and\u00fa", "Gr\u00f6\u00dfe"));
+    }
+}
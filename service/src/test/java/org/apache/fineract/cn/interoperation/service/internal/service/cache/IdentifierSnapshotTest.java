@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class IdentifierSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsWrittenIdentifiers() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tn01.identifiers");
+        try (IdentifierSnapshot.Writer writer = IdentifierSnapshot.writer(file)) {
+            for (int i = 0; i < 10000; i++)
+                writer.add(InteropIdentifierType.MSISDN, String.valueOf(36300000000L + i), null, "acc-" + i);
+            writer.add(InteropIdentifierType.EMAIL, "Alice@Example.org", null, "acc-alice");
+            writer.add(InteropIdentifierType.ALIAS, "alice", "wallet", "acc-wallet");
+            writer.finish(10002L, 17L);
+        }
+
+        IdentifierSnapshot snapshot = IdentifierSnapshot.open(file);
+
+        Assert.assertEquals(10002, snapshot.size());
+        Assert.assertEquals(10002L, snapshot.getIdentifierWatermark());
+        Assert.assertEquals(17L, snapshot.getDeletionWatermark());
+        for (int i = 0; i < 10000; i += 7)
+            Assert.assertEquals("acc-" + i, snapshot.find(InteropIdentifierType.MSISDN, String.valueOf(36300000000L + i), null));
+        Assert.assertNull(snapshot.find(InteropIdentifierType.MSISDN, "36300010000", null));
+        Assert.assertNull(snapshot.find(InteropIdentifierType.ACCOUNT_ID, "36300000000", null));
+    }
+
+    @Test
+    public void findsKeysIgnoringCaseAndMatchesSubIdentifier() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tn01.identifiers");
+        try (IdentifierSnapshot.Writer writer = IdentifierSnapshot.writer(file)) {
+            writer.add(InteropIdentifierType.EMAIL, "Alice@Example.org", null, "acc-alice");
+            writer.add(InteropIdentifierType.ALIAS, "alice", "wallet", "acc-wallet");
+            writer.finish(2L, 0L);
+        }
+
+        IdentifierSnapshot snapshot = IdentifierSnapshot.open(file);
+
+        Assert.assertEquals("acc-alice", snapshot.find(InteropIdentifierType.EMAIL, "alice@example.ORG", null));
+        Assert.assertEquals("acc-wallet", snapshot.find(InteropIdentifierType.ALIAS, "ALICE", "Wallet"));
+        Assert.assertNull(snapshot.find(InteropIdentifierType.ALIAS, "alice", null));
+        Assert.assertNull(snapshot.find(InteropIdentifierType.ALIAS, "alice", "card"));
+        Assert.assertNull(snapshot.find(InteropIdentifierType.EMAIL, "alice@example.org", "wallet"));
+    }
+
+    @Test
+    public void emptySnapshot() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tn01.identifiers");
+        try (IdentifierSnapshot.Writer writer = IdentifierSnapshot.writer(file)) {
+            writer.finish(0L, 0L);
+        }
+
+        IdentifierSnapshot snapshot = IdentifierSnapshot.open(file);
+
+        Assert.assertEquals(0, snapshot.size());
+        Assert.assertNull(snapshot.find(InteropIdentifierType.MSISDN, "36300000000", null));
+    }
+
+    @Test
+    public void rewriteReplacesMappedFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tn01.identifiers");
+        try (IdentifierSnapshot.Writer writer = IdentifierSnapshot.writer(file)) {
+            writer.add(InteropIdentifierType.MSISDN, "36300000001", null, "acc-1");
+            writer.finish(1L, 0L);
+        }
+        IdentifierSnapshot first = IdentifierSnapshot.open(file);
+
+        try (IdentifierSnapshot.Writer writer = IdentifierSnapshot.writer(file)) {
+            writer.add(InteropIdentifierType.MSISDN, "36300000002", null, "acc-2");
+            writer.finish(2L, 0L);
+        }
+        IdentifierSnapshot second = IdentifierSnapshot.open(file);
+
+        Assert.assertEquals("acc-1", first.find(InteropIdentifierType.MSISDN, "36300000001", null));
+        Assert.assertNull(second.find(InteropIdentifierType.MSISDN, "36300000001", null));
+        Assert.assertEquals("acc-2", second.find(InteropIdentifierType.MSISDN, "36300000002", null));
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            Assert.assertEquals(1L, files.count()); // the data and temporary files are removed
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsOtherFiles() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tn01.identifiers");
+        Files.write(file, new byte[64]);
+
+        IdentifierSnapshot.open(file);
+    }
+}
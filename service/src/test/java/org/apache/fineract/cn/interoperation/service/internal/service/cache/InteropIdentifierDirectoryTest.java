@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierDeletionEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierDeletionRepository;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierRepository;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+public class InteropIdentifierDirectoryTest {
+
+    private static final String TENANT = "tn01";
+    private static final int PAGE_SIZE = 2;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<InteropIdentifierEntity> identifiers = new ArrayList<>();
+    private final List<InteropIdentifierDeletionEntity> deletions = new ArrayList<>();
+    /** called with the id after which a page of identifiers is read */
+    private Consumer<Long> onIdentifierPage = id -> {
+    };
+
+    private InteropIdentifierRepository identifierRepository;
+    private InteropIdentifierDeletionRepository deletionRepository;
+
+    @Before
+    public void setUp() {
+        TenantContextHolder.setIdentifier(TENANT);
+
+        identifierRepository = Mockito.mock(InteropIdentifierRepository.class);
+        Mockito.when(identifierRepository.findByIdGreaterThanOrderByIdAsc(Matchers.anyLong(), Matchers.any(Pageable.class))).thenAnswer(invocation -> {
+            long id = (Long) invocation.getArguments()[0];
+            List<InteropIdentifierEntity> page = identifiers.stream().filter(identifier -> identifier.getId() > id).limit(PAGE_SIZE)
+                    .collect(Collectors.toList());
+            onIdentifierPage.accept(id);
+            return page;
+        });
+
+        deletionRepository = Mockito.mock(InteropIdentifierDeletionRepository.class);
+        Mockito.when(deletionRepository.findByIdGreaterThanOrderByIdAsc(Matchers.anyLong(), Matchers.any(Pageable.class))).thenAnswer(invocation -> {
+            long id = (Long) invocation.getArguments()[0];
+            return deletions.stream().filter(deletion -> deletion.getId() > id).limit(PAGE_SIZE).collect(Collectors.toList());
+        });
+        Mockito.when(deletionRepository.findTopByOrderByIdDesc()).thenAnswer(invocation -> deletions.isEmpty() ? null : deletions.get(deletions.size() - 1));
+    }
+
+    @After
+    public void tearDown() {
+        TenantContextHolder.clear();
+    }
+
+    @Test
+    public void loadsIntoMemoryWithoutSnapshot() {
+        addIdentifier(InteropIdentifierType.MSISDN, "36300000001", null, "acc-1");
+        addIdentifier(InteropIdentifierType.EMAIL, "Alice@Example.org", null, "acc-2");
+        addIdentifier(InteropIdentifierType.ALIAS, "alice", "wallet", "acc-3");
+        InteropIdentifierDirectory directory = createDirectory(false);
+
+        directory.load();
+
+        Assert.assertEquals(3, directory.size());
+        Assert.assertEquals("acc-1", directory.find(InteropIdentifierType.MSISDN, "36300000001", null));
+        Assert.assertEquals("acc-2", directory.find(InteropIdentifierType.EMAIL, "alice@example.org", null));
+        Assert.assertEquals("acc-3", directory.find(InteropIdentifierType.ALIAS, "Alice", "WALLET"));
+        Assert.assertNull(directory.find(InteropIdentifierType.ALIAS, "alice", null));
+    }
+
+    @Test
+    public void overlayTakesPrecedenceOverSnapshot() throws Exception {
+        addIdentifier(InteropIdentifierType.MSISDN, "36300000001", null, "acc-1");
+        addIdentifier(InteropIdentifierType.EMAIL, "alice@example.org", null, "acc-2");
+        InteropIdentifierDirectory directory = createDirectory(true);
+
+        directory.load();
+
+        Assert.assertTrue(Files.exists(folder.getRoot().toPath().resolve(TENANT + ".identifiers")));
+        Assert.assertEquals("acc-1", directory.find(InteropIdentifierType.MSISDN, "36300000001", null));
+
+        directory.put(InteropIdentifierType.MSISDN, "36300000001", null, "acc-9");
+        directory.put(InteropIdentifierType.EMAIL, "ALICE@example.org", null, "acc-8");
+
+        Assert.assertEquals("acc-9", directory.find(InteropIdentifierType.MSISDN, "36300000001", null));
+        Assert.assertEquals("acc-8", directory.find(InteropIdentifierType.EMAIL, "alice@example.org", null));
+    }
+
+    @Test
+    public void removalMasksSnapshotEntryUntilPutAgain() throws Exception {
+        addIdentifier(InteropIdentifierType.MSISDN, "36300000001", null, "acc-1");
+        addIdentifier(InteropIdentifierType.EMAIL, "alice@example.org", null, "acc-2");
+        InteropIdentifierDirectory directory = createDirectory(true);
+        directory.load();
+
+        directory.remove(InteropIdentifierType.MSISDN, "36300000001", null);
+        directory.remove(InteropIdentifierType.EMAIL, "Alice@Example.org", null);
+
+        Assert.assertNull(directory.find(InteropIdentifierType.MSISDN, "36300000001", null));
+        Assert.assertNull(directory.find(InteropIdentifierType.EMAIL, "alice@example.org", null));
+
+        directory.put(InteropIdentifierType.EMAIL, "alice@example.org", null, "acc-3");
+
+        Assert.assertEquals("acc-3", directory.find(InteropIdentifierType.EMAIL, "alice@example.org", null));
+        Assert.assertNull(directory.find(InteropIdentifierType.MSISDN, "36300000001", null));
+    }
+
+    @Test
+    public void removedAccountsAreMaskedAndForceRewrite() throws Exception {
+        for (int i = 1; i <= 4; i++)
+            addIdentifier(InteropIdentifierType.MSISDN, "3630000000" + i, null, "acc-" + i);
+        InteropIdentifierDirectory directory = createDirectory(true);
+        Assert.assertTrue(directory.requestLoad());
+        directory.load();
+        Assert.assertFalse(directory.requestLoad());
+
+        directory.removeAccount("acc-1");
+        directory.removeAccount("acc-2");
+
+        Assert.assertNull(directory.find(InteropIdentifierType.MSISDN, "36300000001", null));
+        Assert.assertNull(directory.find(InteropIdentifierType.MSISDN, "36300000002", null));
+        Assert.assertEquals("acc-3", directory.find(InteropIdentifierType.MSISDN, "36300000003", null));
+        Assert.assertFalse(directory.requestLoad());
+
+        // more masked accounts than allowed, the next load writes a new snapshot
+        directory.removeAccount("acc-3");
+        Assert.assertTrue(directory.requestLoad());
+
+        identifiers.removeIf(identifier -> !identifier.getCustomerAccountIdentifier().equals("acc-4"));
+        directory.load();
+
+        Assert.assertNull(directory.find(InteropIdentifierType.MSISDN, "36300000003", null));
+        Assert.assertEquals("acc-4", directory.find(InteropIdentifierType.MSISDN, "36300000004", null));
+        Mockito.verify(deletionRepository, Mockito.times(2)).findTopByOrderByIdDesc();
+    }
+
+    /** A restarted instance maps the snapshot written before and replays the changes after its watermarks */
+    @Test
+    public void reloadReplaysChangesSinceSnapshot() throws Exception {
+        addIdentifier(InteropIdentifierType.MSISDN, "36300000001", null, "acc-1");
+        InteropIdentifierEntity deleted = addIdentifier(InteropIdentifierType.MSISDN, "36300000002", null, "acc-2");
+        addIdentifier(InteropIdentifierType.EMAIL, "alice@example.org", null, "acc-3");
+        createDirectory(true).load();
+
+        identifiers.remove(deleted);
+        addDeletion(deleted);
+        addIdentifier(InteropIdentifierType.MSISDN, "36300000004", null, "acc-4");
+        addIdentifier(InteropIdentifierType.ALIAS, "bob", null, "acc-5");
+
+        InteropIdentifierDirectory restarted = createDirectory(true);
+        restarted.load();
+
+        // the snapshot was mapped, not written again
+        Mockito.verify(deletionRepository, Mockito.times(1)).findTopByOrderByIdDesc();
+        Assert.assertEquals("acc-1", restarted.find(InteropIdentifierType.MSISDN, "36300000001", null));
+        Assert.assertNull(restarted.find(InteropIdentifierType.MSISDN, "36300000002", null));
+        Assert.assertEquals("acc-3", restarted.find(InteropIdentifierType.EMAIL, "alice@example.org", null));
+        Assert.assertEquals("acc-4", restarted.find(InteropIdentifierType.MSISDN, "36300000004", null));
+        Assert.assertEquals("acc-5", restarted.find(InteropIdentifierType.ALIAS, "bob", null));
+    }
+
+    /** Identifiers removed while their page was read are not added by the replay, and the replay does not start over */
+    @Test
+    public void removalDuringReplayWins() {
+        for (int i = 1; i <= 6; i++)
+            addIdentifier(InteropIdentifierType.MSISDN, "3630000000" + i, null, "acc-" + i);
+        addIdentifier(InteropIdentifierType.EMAIL, "alice@example.org", null, "acc-7");
+        InteropIdentifierDirectory directory = createDirectory(false);
+        onIdentifierPage = id -> {
+            if (id == 2L)
+                directory.remove(InteropIdentifierType.MSISDN, "36300000004", null);
+            else if (id == 4L)
+                directory.removeAccount("acc-7");
+        };
+
+        directory.load();
+
+        Assert.assertNull(directory.find(InteropIdentifierType.MSISDN, "36300000004", null));
+        Assert.assertNull(directory.find(InteropIdentifierType.EMAIL, "alice@example.org", null));
+        Assert.assertEquals("acc-5", directory.find(InteropIdentifierType.MSISDN, "36300000005", null));
+        Assert.assertEquals(5, directory.size());
+        Mockito.verify(identifierRepository, Mockito.times(4)).findByIdGreaterThanOrderByIdAsc(Matchers.anyLong(), Matchers.any(Pageable.class));
+    }
+
+    /** An entry read from the database before a removal is not added after it */
+    @Test
+    public void staleReadIsNotAdded() {
+        InteropIdentifierEntity identifier = addIdentifier(InteropIdentifierType.ALIAS, "bob", null, "acc-1");
+        InteropIdentifierDirectory directory = createDirectory(false);
+
+        long version = directory.getVersion();
+        directory.remove(InteropIdentifierType.ALIAS, "bob", null);
+        directory.put(identifier, version);
+
+        Assert.assertNull(directory.find(InteropIdentifierType.ALIAS, "bob", null));
+
+        directory.put(identifier, directory.getVersion());
+
+        Assert.assertEquals("acc-1", directory.find(InteropIdentifierType.ALIAS, "bob", null));
+    }
+
+    private InteropIdentifierDirectory createDirectory(boolean snapshot) {
+        return new InteropIdentifierDirectory(Mockito.mock(Logger.class), identifierRepository, deletionRepository, true, PAGE_SIZE,
+                snapshot ? folder.getRoot().getAbsolutePath() : "", 86400L, 2);
+    }
+
+    private InteropIdentifierEntity addIdentifier(InteropIdentifierType type, String value, String subValueOrType, String accountId) {
+        InteropIdentifierEntity identifier = new InteropIdentifierEntity(accountId, type, value, subValueOrType, "operator", LocalDateTime.now());
+        ReflectionTestUtils.setField(identifier, "id", identifiers.isEmpty() ? 1L : identifiers.get(identifiers.size() - 1).getId() + 1);
+        identifiers.add(identifier);
+        return identifier;
+    }
+
+    private void addDeletion(InteropIdentifierEntity identifier) {
+        InteropIdentifierDeletionEntity deletion = new InteropIdentifierDeletionEntity(identifier, "operator", LocalDateTime.now());
+        ReflectionTestUtils.setField(deletion, "id", (long) deletions.size() + 1);
+        deletions.add(deletion);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import org.apache.fineract.cn.interoperation.api.v1.domain.InteropIdentifierType;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierEntity;
+import org.apache.fineract.cn.interoperation.service.internal.repository.InteropIdentifierRepository;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class InteropIdentifierFilterTest {
+
+    private static final int PAGE_SIZE = 100;
+
+    private final List<InteropIdentifierEntity> identifiers = new ArrayList<>();
+    /** called before a page of identifiers is returned to the build */
+    private Runnable onPage = () -> {
+    };
+
+    private InteropIdentifierFilter filter;
+
+    @Before
+    public void setUp() {
+        TenantContextHolder.setIdentifier("tn01");
+
+        InteropIdentifierRepository identifierRepository = Mockito.mock(InteropIdentifierRepository.class);
+        Mockito.when(identifierRepository.countByType(Matchers.any(InteropIdentifierType.class))).thenAnswer(invocation ->
+                identifiers.stream().filter(identifier -> identifier.getType() == invocation.getArguments()[0]).count());
+        Mockito.when(identifierRepository.findByIdGreaterThanOrderByIdAsc(Matchers.anyLong(), Matchers.any(Pageable.class))).thenAnswer(invocation -> {
+            long id = (Long) invocation.getArguments()[0];
+            onPage.run();
+            return identifiers.stream().filter(identifier -> identifier.getId() > id).limit(PAGE_SIZE).collect(Collectors.toList());
+        });
+
+        filter = new InteropIdentifierFilter(Mockito.mock(Logger.class), identifierRepository, 0.01, PAGE_SIZE, 3600L);
+    }
+
+    @After
+    public void tearDown() {
+        TenantContextHolder.clear();
+    }
+
+    @Test
+    public void everythingMightBeContainedUntilBuilt() {
+        addIdentifiers(0, 10);
+
+        Assert.assertTrue(filter.mightContain(InteropIdentifierType.MSISDN, "999", null));
+        Assert.assertTrue(filter.requestBuild());
+        Assert.assertFalse(filter.requestBuild());
+    }
+
+    @Test
+    public void builtFilterRejectsUnregistered() {
+        addIdentifiers(0, 1000);
+        filter.buildAsync();
+
+        for (int i = 0; i < 1000; i++)
+            Assert.assertTrue(filter.mightContain(InteropIdentifierType.MSISDN, msisdn(i), null));
+        Assert.assertTrue(countContained(1000, 11000) < 300);
+        Assert.assertFalse(filter.requestBuild());
+    }
+
+    @Test
+    public void keysIgnoreCaseAndKeepSubIdentifier() {
+        addIdentifier(InteropIdentifierType.EMAIL, "Alice@Example.org", null);
+        addIdentifier(InteropIdentifierType.ALIAS, "alice", "wallet");
+        filter.buildAsync();
+
+        Assert.assertTrue(filter.mightContain(InteropIdentifierType.EMAIL, "alice@example.ORG", null));
+        Assert.assertTrue(filter.mightContain(InteropIdentifierType.ALIAS, "ALICE", "Wallet"));
+        Assert.assertFalse(filter.mightContain(InteropIdentifierType.EMAIL, "bob@example.org", null));
+
+        filter.put(InteropIdentifierType.EMAIL, "Bob@Example.org", null);
+
+        Assert.assertTrue(filter.mightContain(InteropIdentifierType.EMAIL, "bob@example.org", null));
+    }
+
+    /** Deleted identifiers stay in the filter until the removals trigger a rebuild, which drops them */
+    @Test
+    public void rebuildAfterDeletesDropsDeleted() {
+        addIdentifiers(0, 2000);
+        filter.buildAsync();
+
+        // capacity: 4000 MSISDNs and 1000 of each other type, rebuilt over 10% of it
+        identifiers.subList(0, 1000).clear();
+        filter.recordRemovals(1000);
+        Assert.assertEquals(1000, countContained(0, 1000));
+        Assert.assertFalse(filter.requestBuild());
+
+        filter.recordRemovals(200);
+        Assert.assertTrue(filter.requestBuild());
+        filter.buildAsync();
+
+        Assert.assertTrue(countContained(0, 1000) < 30);
+        Assert.assertEquals(1000, countContained(1000, 2000));
+        Assert.assertFalse(filter.requestBuild());
+    }
+
+    @Test
+    public void insertionsOverCapacityRequestRebuild() {
+        addIdentifiers(0, 100);
+        filter.buildAsync();
+
+        for (int i = 100; i < 11000; i++)
+            filter.put(InteropIdentifierType.MSISDN, msisdn(i), null);
+
+        Assert.assertTrue(filter.requestBuild());
+        Assert.assertEquals(11000, countContained(0, 11000));
+    }
+
+    @Test
+    public void registrationDuringBuildIsKept() {
+        addIdentifiers(0, 300);
+        onPage = () -> filter.put(InteropIdentifierType.MSISDN, msisdn(5000), null);
+
+        filter.buildAsync();
+
+        Assert.assertTrue(filter.mightContain(InteropIdentifierType.MSISDN, msisdn(5000), null));
+    }
+
+    @Test
+    public void clearDuringBuildDropsNewFilters() {
+        addIdentifiers(0, 300);
+        onPage = () -> filter.clear();
+
+        filter.buildAsync();
+
+        Assert.assertTrue(filter.mightContain(InteropIdentifierType.MSISDN, msisdn(5000), null));
+        Assert.assertTrue(filter.requestBuild());
+    }
+
+    private int countContained(int from, int to) {
+        int contained = 0;
+        for (int i = from; i < to; i++) {
+            if (filter.mightContain(InteropIdentifierType.MSISDN, msisdn(i), null))
+                contained++;
+        }
+        return contained;
+    }
+
+    private void addIdentifiers(int from, int to) {
+        for (int i = from; i < to; i++)
+            addIdentifier(InteropIdentifierType.MSISDN, msisdn(i), null);
+    }
+
+    private void addIdentifier(InteropIdentifierType type, String value, String subValueOrType) {
+        InteropIdentifierEntity identifier = new InteropIdentifierEntity("acc-" + identifiers.size(), type, value, subValueOrType, "operator",
+                LocalDateTime.now());
+        ReflectionTestUtils.setField(identifier, "id", identifiers.isEmpty() ? 1L : identifiers.get(identifiers.size() - 1).getId() + 1);
+        identifiers.add(identifier);
+    }
+
+    private static String msisdn(int i) {
+        return String.valueOf(36300000000L + i);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class MsisdnIndexTest {
+
+    @Test
+    public void packsOnlyDecimalDigits() {
+        Assert.assertTrue(MsisdnIndex.isPackable("0"));
+        Assert.assertTrue(MsisdnIndex.isPackable("123456789012345"));
+        Assert.assertFalse(MsisdnIndex.isPackable("1234567890123456"));
+        Assert.assertFalse(MsisdnIndex.isPackable("+36301234567"));
+        Assert.assertFalse(MsisdnIndex.isPackable(""));
+        Assert.assertFalse(MsisdnIndex.isPackable(null));
+
+        MsisdnIndex index = new MsisdnIndex();
+        Assert.assertFalse(index.put("+36301234567", "acc-1"));
+        Assert.assertNull(index.get("+36301234567"));
+        Assert.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void keepsLeadingZeros() {
+        MsisdnIndex index = new MsisdnIndex();
+        index.put("1", "acc-1");
+        index.put("01", "acc-2");
+        index.put("001", "acc-3");
+
+        Assert.assertEquals("acc-1", index.get("1"));
+        Assert.assertEquals("acc-2", index.get("01"));
+        Assert.assertEquals("acc-3", index.get("001"));
+        Assert.assertNull(index.get("0001"));
+    }
+
+    @Test
+    public void putReplacesAndPutIfAbsentKeeps() {
+        MsisdnIndex index = new MsisdnIndex();
+        Assert.assertTrue(index.put("36301234567", "acc-1"));
+        Assert.assertTrue(index.putIfAbsent("36301234567", "acc-2"));
+        Assert.assertEquals("acc-1", index.get("36301234567"));
+
+        Assert.assertTrue(index.put("36301234567", "acc-2"));
+        Assert.assertEquals("acc-2", index.get("36301234567"));
+        Assert.assertEquals(1, index.size());
+    }
+
+    /** Sequential numbers fill the table up to its load factor, so the probe sequences collide and wrap around */
+    @Test
+    public void deleteKeepsCollidingEntriesReachable() {
+        MsisdnIndex index = new MsisdnIndex();
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 600; i++) {
+            String msisdn = String.valueOf(36300000000L + i);
+            String account = "acc-" + (i % 37);
+            index.put(msisdn, account);
+            expected.put(msisdn, account);
+        }
+        // every third entry, so holes open in the middle of the probe sequences
+        for (int i = 0; i < 600; i += 3) {
+            String msisdn = String.valueOf(36300000000L + i);
+            Assert.assertTrue(index.remove(msisdn));
+            Assert.assertFalse(index.remove(msisdn));
+            expected.remove(msisdn);
+        }
+
+        assertContent(expected, index);
+        for (int i = 0; i < 600; i += 3)
+            Assert.assertNull(index.get(String.valueOf(36300000000L + i)));
+    }
+
+    @Test
+    public void matchesMapUnderRandomOperations() {
+        Random random = new Random(42);
+        MsisdnIndex index = new MsisdnIndex();
+        Map<String, String> expected = new HashMap<>();
+        List<String> msisdns = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+            msisdns.add(String.valueOf(random.nextInt(3) == 0 ? 7000000L + random.nextInt(20000) : 36300000000L + random.nextInt(20000)));
+
+        for (int round = 0; round < 50000; round++) {
+            String msisdn = msisdns.get(random.nextInt(msisdns.size()));
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                String account = "account-" + random.nextInt(500);
+                index.put(msisdn, account);
+                expected.put(msisdn, account);
+            } else if (operation < 9)
+                Assert.assertEquals(expected.remove(msisdn) != null, index.remove(msisdn));
+            else
+                Assert.assertEquals(expected.get(msisdn), index.get(msisdn));
+        }
+
+        assertContent(expected, index);
+    }
+
+    @Test
+    public void removeAccountRemovesAllItsMsisdns() {
+        MsisdnIndex index = new MsisdnIndex();
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            String msisdn = String.valueOf(36300000000L + i);
+            String account = "acc-" + (i % 5);
+            index.put(msisdn, account);
+            expected.put(msisdn, account);
+        }
+
+        Assert.assertEquals(400, index.removeAccount("acc-3"));
+        Assert.assertEquals(0, index.removeAccount("acc-3"));
+        Assert.assertEquals(0, index.removeAccount("acc-unknown"));
+        expected.values().removeIf("acc-3"::equals);
+
+        assertContent(expected, index);
+    }
+
+    /** Replaced accounts are dropped from the arena when it is compacted, the remaining ones keep their MSISDNs */
+    @Test
+    public void compactionKeepsLiveAccounts() {
+        MsisdnIndex index = new MsisdnIndex();
+        Map<String, String> expected = new HashMap<>();
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 50; i++) {
+                String msisdn = String.valueOf(36300000000L + i);
+                String account = "account-" + round + "-" + i + "-with-a-longer-identifier";
+                index.put(msisdn, account);
+                expected.put(msisdn, account);
+            }
+        }
+
+        assertContent(expected, index);
+        // about 50 accounts of 45 bytes are live, the 10000 written ones would take about 450kB
+        Assert.assertTrue(index.getTableSize() < 64 * 1024);
+    }
+
+    @Test
+    public void clearRemovesAll() {
+        MsisdnIndex index = new MsisdnIndex();
+        for (int i = 0; i < 1000; i++)
+            index.put(String.valueOf(36300000000L + i), "acc-" + i);
+
+        index.clear();
+
+        Assert.assertEquals(0, index.size());
+        Assert.assertNull(index.get("36300000000"));
+        index.put("36300000000", "acc-1");
+        Assert.assertEquals("acc-1", index.get("36300000000"));
+    }
+
+    private static void assertContent(Map<String, String> expected, MsisdnIndex index) {
+        Assert.assertEquals(expected.size(), index.size());
+        expected.forEach((msisdn, account) -> Assert.assertEquals(msisdn, account, index.get(msisdn)));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.helper;
+
+import org.apache.fineract.cn.deposit.api.v1.client.DepositAccountManager;
+import org.apache.fineract.cn.deposit.api.v1.definition.domain.Action;
+import org.apache.fineract.cn.deposit.api.v1.definition.domain.Charge;
+import org.apache.fineract.cn.deposit.api.v1.definition.domain.ProductDefinition;
+import org.apache.fineract.cn.deposit.api.v1.instance.domain.ProductInstance;
+import org.apache.fineract.cn.interoperation.api.v1.domain.TransactionType;
+import org.apache.fineract.cn.interoperation.service.internal.service.cache.InteropCacheManager;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ChargeScheduleIndexTest {
+
+    private static final String WITHDRAW_ACTION = "withdraw";
+    private static final String DEPOSIT_ACTION = "deposit";
+
+    private final List<Action> actions = new ArrayList<>();
+    private final List<ProductDefinition> productDefinitions = new ArrayList<>();
+
+    private DepositAccountManager depositAccountManager;
+    private ChargeScheduleIndex chargeScheduleIndex;
+    private InteropDepositService depositService;
+
+    @Before
+    public void setUp() {
+        TenantContextHolder.setIdentifier("tn01");
+
+        actions.add(createAction(WITHDRAW_ACTION, TransactionType.CURRENCY_WITHDRAWAL));
+        actions.add(createAction(DEPOSIT_ACTION, TransactionType.CURRENCY_DEPOSIT));
+
+        depositAccountManager = Mockito.mock(DepositAccountManager.class);
+        Mockito.when(depositAccountManager.fetchActions()).thenAnswer(invocation -> new ArrayList<>(actions));
+        Mockito.when(depositAccountManager.fetchProductDefinitions()).thenAnswer(invocation -> new ArrayList<>(productDefinitions));
+        Mockito.when(depositAccountManager.findProductDefinition(Matchers.anyString())).thenAnswer(invocation -> {
+            String identifier = (String) invocation.getArguments()[0];
+            return productDefinitions.stream().filter(definition -> definition.getIdentifier().equals(identifier)).findFirst().orElse(null);
+        });
+        Mockito.when(depositAccountManager.findProductInstance(Matchers.anyString())).thenAnswer(invocation -> {
+            String accountIdentifier = (String) invocation.getArguments()[0];
+            ProductInstance productInstance = new ProductInstance();
+            productInstance.setAccountIdentifier(accountIdentifier);
+            productInstance.setCustomerIdentifier("customer-" + accountIdentifier);
+            productInstance.setProductIdentifier("product-" + accountIdentifier);
+            return productInstance;
+        });
+
+        Logger logger = Mockito.mock(Logger.class);
+        chargeScheduleIndex = Mockito.spy(new ChargeScheduleIndex(logger, depositAccountManager, 3600L));
+        Mockito.doNothing().when(chargeScheduleIndex).rebuildAsync();
+        depositService = new InteropDepositService(logger, depositAccountManager, chargeScheduleIndex,
+                new InteropCacheManager(logger, new MockEnvironment()));
+    }
+
+    @After
+    public void tearDown() {
+        TenantContextHolder.clear();
+    }
+
+    @Test
+    public void scheduleIsBuiltOnFirstUseAndGroupsChargesByTransactionType() {
+        Charge withdrawFee = createCharge(WITHDRAW_ACTION, 1.5);
+        Charge depositFee = createCharge(DEPOSIT_ACTION, 0.5);
+        productDefinitions.add(createProduct("product-A", withdrawFee, depositFee, createCharge("unknown", 9.0)));
+        productDefinitions.add(createProduct("product-B"));
+
+        Assert.assertEquals(Collections.singletonList(withdrawFee), depositService.getWithdrawCharges("A"));
+        Assert.assertEquals(Collections.singletonList(depositFee), depositService.getDepositCharges("A"));
+        Assert.assertTrue(depositService.getWithdrawCharges("B").isEmpty());
+
+        Mockito.verify(depositAccountManager, Mockito.times(1)).fetchActions();
+        Mockito.verify(depositAccountManager, Mockito.times(1)).fetchProductDefinitions();
+        Mockito.verify(depositAccountManager, Mockito.never()).findProductDefinition(Matchers.anyString());
+        Mockito.verify(chargeScheduleIndex, Mockito.never()).rebuildAsync();
+    }
+
+    @Test
+    public void newerProductIsResolvedAndRequestsOneRebuild() {
+        productDefinitions.add(createProduct("product-A"));
+        Assert.assertTrue(depositService.getWithdrawCharges("A").isEmpty());
+
+        Charge withdrawFee = createCharge(WITHDRAW_ACTION, 2.0);
+        productDefinitions.add(createProduct("product-C", withdrawFee));
+
+        Assert.assertEquals(Collections.singletonList(withdrawFee), depositService.getWithdrawCharges("C"));
+        Assert.assertEquals(Collections.singletonList(withdrawFee), depositService.getWithdrawCharges("C"));
+        Mockito.verify(chargeScheduleIndex, Mockito.times(1)).rebuildAsync();
+
+        chargeScheduleIndex.rebuild();
+        Assert.assertEquals(Collections.singletonList(withdrawFee), depositService.getWithdrawCharges("C"));
+        Mockito.verify(chargeScheduleIndex, Mockito.times(1)).rebuildAsync();
+    }
+
+    @Test
+    public void invalidatedScheduleIsServedWhileRebuilt() {
+        Charge oldFee = createCharge(WITHDRAW_ACTION, 1.0);
+        productDefinitions.add(createProduct("product-A", oldFee));
+        Assert.assertEquals(Collections.singletonList(oldFee), depositService.getWithdrawCharges("A"));
+
+        Charge newFee = createCharge(WITHDRAW_ACTION, 3.0);
+        productDefinitions.set(0, createProduct("product-A", newFee));
+        depositService.evictActions();
+
+        Assert.assertEquals(Collections.singletonList(oldFee), depositService.getWithdrawCharges("A"));
+        Assert.assertEquals(Collections.singletonList(oldFee), depositService.getWithdrawCharges("A"));
+        Mockito.verify(chargeScheduleIndex, Mockito.times(1)).rebuildAsync();
+
+        chargeScheduleIndex.rebuild();
+        Assert.assertEquals(Collections.singletonList(newFee), depositService.getWithdrawCharges("A"));
+        Assert.assertFalse(chargeScheduleIndex.getSchedule().isStale());
+    }
+
+    @Test
+    public void expiredScheduleIsStale() {
+        productDefinitions.add(createProduct("product-A"));
+        ChargeSchedule schedule = ChargeSchedule.build(actions, productDefinitions, -1L);
+
+        Assert.assertTrue(schedule.isStale());
+        Assert.assertFalse(ChargeSchedule.build(actions, productDefinitions, 3600L).isStale());
+    }
+
+    @Test
+    public void failedRebuildKeepsScheduleAndAllowsNextRequest() {
+        Charge fee = createCharge(WITHDRAW_ACTION, 1.0);
+        productDefinitions.add(createProduct("product-A", fee));
+        ChargeSchedule schedule = chargeScheduleIndex.getSchedule();
+        Assert.assertTrue(schedule.requestRefresh());
+        Assert.assertFalse(schedule.requestRefresh());
+
+        Mockito.when(depositAccountManager.fetchActions()).thenThrow(new IllegalStateException("deposit service is down"));
+        Mockito.doCallRealMethod().when(chargeScheduleIndex).rebuildAsync();
+        chargeScheduleIndex.rebuildAsync();
+
+        Assert.assertSame(schedule, chargeScheduleIndex.getSchedule());
+        Assert.assertEquals(Collections.singletonList(fee), schedule.getCharges("product-A", TransactionType.CURRENCY_WITHDRAWAL));
+        Assert.assertTrue(schedule.requestRefresh());
+    }
+
+    private static Action createAction(String identifier, TransactionType transactionType) {
+        Action action = new Action();
+        action.setIdentifier(identifier);
+        action.setTransactionType(transactionType.getCode());
+        return action;
+    }
+
+    private static Charge createCharge(String actionIdentifier, double amount) {
+        Charge charge = new Charge();
+        charge.setActionIdentifier(actionIdentifier);
+        charge.setIncomeAccountIdentifier("income");
+        charge.setProportional(false);
+        charge.setAmount(amount);
+        return charge;
+    }
+
+    private static ProductDefinition createProduct(String identifier, Charge... charges) {
+        ProductDefinition productDefinition = new ProductDefinition();
+        productDefinition.setIdentifier(identifier);
+        productDefinition.setCharges(Arrays.asList(charges));
+        return productDefinition;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.interoperation.service.internal.service.helper;
+
+import org.apache.fineract.cn.accounting.api.v1.domain.Creditor;
+import org.apache.fineract.cn.accounting.api.v1.domain.Debtor;
+import org.apache.fineract.cn.accounting.api.v1.domain.JournalEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+public class InteropJournalPostingTest {
+
+    private static final String ACCOUNT = "customer";
+    private static final String PAYABLE = "payable";
+    private static final String NOSTRO = "nostro";
+    private static final String INCOME = "income";
+
+    private final List<JournalEntry> posted = new ArrayList<>();
+    private final List<JournalEntry> postedDirect = new ArrayList<>();
+
+    @Test
+    public void separateModePostsEveryLegAndCustomerDebitsDirectly() {
+        InteropJournalPosting posting = createPosting(InteropJournalPosting.PostingMode.SEPARATE);
+        JournalEntry commit = createLeg(PAYABLE, NOSTRO, "100.0");
+        JournalEntry fee = createLeg(ACCOUNT, INCOME, "2.0");
+
+        posting.add(commit);
+        posting.add(fee);
+        posting.flush();
+
+        Assert.assertEquals(Collections.singletonList(commit), posted);
+        Assert.assertEquals(Collections.singletonList(fee), postedDirect);
+    }
+
+    @Test
+    public void combinedModeNetsDebitCommitIntoOneEntry() {
+        InteropJournalPosting posting = createPosting(InteropJournalPosting.PostingMode.COMBINED);
+        posting.add(createLeg(PAYABLE, NOSTRO, "100.0"));
+        posting.add(createLeg(PAYABLE, INCOME, "2.0"));
+        posting.add(createLeg(PAYABLE, ACCOUNT, "3.0"));
+        Assert.assertTrue(posted.isEmpty());
+
+        posting.flush();
+
+        Assert.assertTrue(postedDirect.isEmpty());
+        Assert.assertEquals(1, posted.size());
+        JournalEntry entry = posted.get(0);
+        Assert.assertEquals("action", entry.getTransactionIdentifier());
+        Assert.assertEquals(Collections.singletonMap(PAYABLE, "105.0"), creditors(entry));
+        Map<String, String> debtors = new HashMap<>();
+        debtors.put(NOSTRO, "100.0");
+        debtors.put(INCOME, "2.0");
+        debtors.put(ACCOUNT, "3.0");
+        Assert.assertEquals(debtors, debtors(entry));
+    }
+
+    @Test
+    public void combinedEntryIsPostedDirectlyIfAnyLegDebitsCustomer() {
+        InteropJournalPosting posting = createPosting(InteropJournalPosting.PostingMode.COMBINED);
+        posting.add(createLeg(PAYABLE, NOSTRO, "10.0"));
+        posting.add(createLeg(ACCOUNT, NOSTRO, "40.0"));
+        posting.add(createLeg(ACCOUNT, INCOME, "1.0"));
+        posting.flush();
+
+        Assert.assertTrue(posted.isEmpty());
+        Assert.assertEquals(1, postedDirect.size());
+        JournalEntry entry = postedDirect.get(0);
+        Map<String, String> creditors = new HashMap<>();
+        creditors.put(PAYABLE, "10.0");
+        creditors.put(ACCOUNT, "41.0");
+        Assert.assertEquals(creditors, creditors(entry));
+        Map<String, String> debtors = new HashMap<>();
+        debtors.put(NOSTRO, "50.0");
+        debtors.put(INCOME, "1.0");
+        Assert.assertEquals(debtors, debtors(entry));
+    }
+
+    @Test
+    public void accountNettedToZeroIsLeftOut() {
+        InteropJournalPosting posting = createPosting(InteropJournalPosting.PostingMode.COMBINED);
+        posting.add(createLeg(PAYABLE, ACCOUNT, "5.0"));
+        posting.add(createLeg(ACCOUNT, NOSTRO, "5.0"));
+        posting.flush();
+
+        Assert.assertEquals(1, postedDirect.size());
+        JournalEntry entry = postedDirect.get(0);
+        Assert.assertEquals(Collections.singletonMap(PAYABLE, "5.0"), creditors(entry));
+        Assert.assertEquals(Collections.singletonMap(NOSTRO, "5.0"), debtors(entry));
+    }
+
+    @Test
+    public void nothingIsPostedIfLegsCancelOut() {
+        InteropJournalPosting posting = createPosting(InteropJournalPosting.PostingMode.COMBINED);
+        posting.add(createLeg(PAYABLE, ACCOUNT, "5.0"));
+        posting.add(createLeg(ACCOUNT, PAYABLE, "5.00"));
+        posting.flush();
+
+        Assert.assertTrue(posted.isEmpty());
+        Assert.assertTrue(postedDirect.isEmpty());
+
+        // the netted legs are cleared by the flush
+        posting.add(createLeg(PAYABLE, NOSTRO, "7.0"));
+        posting.flush();
+
+        Assert.assertTrue(postedDirect.isEmpty());
+        Assert.assertEquals(1, posted.size());
+        Assert.assertEquals(Collections.singletonMap(PAYABLE, "7.0"), creditors(posted.get(0)));
+        Assert.assertEquals(Collections.singletonMap(NOSTRO, "7.0"), debtors(posted.get(0)));
+    }
+
+    @Test
+    public void accountsOfDifferentCurrenciesAreNettedSeparately() {
+        // every account has its own currency, amounts of different accounts are never offset
+        InteropJournalPosting posting = createPosting(InteropJournalPosting.PostingMode.COMBINED);
+        posting.add(createLeg("payable-JPY", "nostro-JPY", "1000.0"));
+        posting.add(createLeg("payable-JPY", "nostro-JPY", "250.0"));
+        posting.add(createLeg("payable-KWD", "nostro-KWD", "0.1"));
+        posting.add(createLeg("payable-KWD", "nostro-KWD", "0.2"));
+        posting.add(createLeg("nostro-KWD", "payable-KWD", "0.125"));
+        posting.flush();
+
+        Assert.assertEquals(1, posted.size());
+        JournalEntry entry = posted.get(0);
+        Map<String, String> creditors = new HashMap<>();
+        creditors.put("payable-JPY", "1250.0");
+        creditors.put("payable-KWD", "0.175");
+        Assert.assertEquals(creditors, creditors(entry));
+        Map<String, String> debtors = new HashMap<>();
+        debtors.put("nostro-JPY", "1250.0");
+        debtors.put("nostro-KWD", "0.175");
+        Assert.assertEquals(debtors, debtors(entry));
+    }
+
+    private InteropJournalPosting createPosting(InteropJournalPosting.PostingMode mode) {
+        JournalEntry combinedEntry = new JournalEntry();
+        combinedEntry.setTransactionIdentifier("action");
+        return new InteropJournalPosting(posted::add, postedDirect::add, ACCOUNT, mode, combinedEntry);
+    }
+
+    private static JournalEntry createLeg(String creditorAccount, String debtorAccount, String amount) {
+        Creditor creditor = new Creditor();
+        creditor.setAccountNumber(creditorAccount);
+        creditor.setAmount(amount);
+        Debtor debtor = new Debtor();
+        debtor.setAccountNumber(debtorAccount);
+        debtor.setAmount(amount);
+
+        JournalEntry journalEntry = new JournalEntry();
+        journalEntry.setCreditors(new HashSet<>(Collections.singleton(creditor)));
+        journalEntry.setDebtors(new HashSet<>(Collections.singleton(debtor)));
+        return journalEntry;
+    }
+
+    private static Map<String, String> creditors(JournalEntry journalEntry) {
+        Map<String, String> result = new HashMap<>();
+        journalEntry.getCreditors().forEach(creditor -> Assert.assertNull(result.put(creditor.getAccountNumber(), creditor.getAmount())));
+        return result;
+    }
+
+    private static Map<String, String> debtors(JournalEntry journalEntry) {
+        Map<String, String> result = new HashMap<>();
+        journalEntry.getDebtors().forEach(debtor -> Assert.assertNull(result.put(debtor.getAccountNumber(), debtor.getAmount())));
+        return result;
+    }
+}